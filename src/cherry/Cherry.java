@@ -23,11 +23,17 @@
  */
 package cherry;
 
+import cherry.frontend.grammar.GrammarAnalysis;
+import cherry.frontend.grammar.ParseTable;
+import cherry.frontend.lexer.TokenCache;
 import cherry.frontend.parser.Parser;
 import cherry.util.handler.command.CLI;
+import cherry.util.handler.diagnostic.DiagnosticHandler;
 import cherry.util.handler.file.FileHandler;
+import cherry.util.handler.flag.FlagHandler;
 import cherry.util.object.ParseTree;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.concurrent.Callable;
@@ -85,6 +91,28 @@ public final class Cherry {
         }
         ////////////////// End Parser calls ///////////////////
         
+        // The grammar is the same for every file, so its analysis is printed once.
+        if (FlagHandler.raisedFlags.contains(FlagHandler.RuntimeFlag.FIRST))
+            DiagnosticHandler.print(GrammarAnalysis.get().firsts(), true);
+        
+        if (FlagHandler.raisedFlags.contains(FlagHandler.RuntimeFlag.FOLLOW))
+            DiagnosticHandler.print(GrammarAnalysis.get().follows(), false);
+        
+        if (FlagHandler.raisedFlags.contains(FlagHandler.RuntimeFlag.TABLE))
+            DiagnosticHandler.print(ParseTable.get());
+        
+        if (FlagHandler.raisedFlags.contains(FlagHandler.RuntimeFlag.IDENTIFIERS))
+            DiagnosticHandler.printIdentifierPool();
+        
+        if (FlagHandler.raisedFlags.contains(FlagHandler.RuntimeFlag.CACHE) &&
+                FlagHandler.raisedFlags.contains(FlagHandler.RuntimeFlag.HITS)) {
+            try {
+                DiagnosticHandler.print(TokenCache.shared());
+            } catch (IOException ex) {
+                Logger.getLogger(Cherry.class.getName()).log(Level.WARNING, ex.getMessage(), ex);
+            }
+        }
+        
         // continue code here.
     }
 }
@@ -0,0 +1,123 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.grammar;
+
+import java.util.Arrays;
+
+/**
+ * Sets of {@code Terminal}s kept as bits in an array of longs, a terminal being
+ * in a set when the bit at its ordinal is set. Every set has room for every
+ * terminal, so two sets can always be joined a long at a time.
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+final class Bitsets {
+    /** The number of longs in a set. */
+    static final int WORDS = (Terminal.values().length + 63) >>> 6;
+
+    /** Not to be constructed. */
+    private Bitsets() {}
+
+    /**
+     * @return An empty set.
+     */
+    static long[] create() {
+        return new long[WORDS];
+    }
+
+    /**
+     * @param set The set to add to.
+     * @param terminal The ordinal of the terminal to add.
+     */
+    static void add(long[] set, int terminal) {
+        set[terminal >>> 6] |= 1L << terminal;
+    }
+
+    /**
+     * @param set The set to look in.
+     * @param terminal The ordinal of the terminal to look for.
+     * @return Whether the terminal is in the set.
+     */
+    static boolean contains(long[] set, int terminal) {
+        return (set[terminal >>> 6] & 1L << terminal) != 0;
+    }
+
+    /**
+     * Adds every terminal of one set to another, except for one of them.
+     *
+     * @param into The set to add to.
+     * @param from The set to add from.
+     * @param except The ordinal of the terminal to leave out.
+     * @return Whether anything was added.
+     */
+    static boolean addAll(long[] into, long[] from, int except) {
+        boolean changed = false;
+
+        for (int i = 0; i < WORDS; i++) {
+            long word = from[i];
+
+            if (i == except >>> 6) word &= ~(1L << except);
+
+            long joined = into[i] | word;
+
+            if (joined != into[i]) {
+                into[i] = joined;
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * Adds a value to the end of one of a number of lists, which grow by
+     * doubling so that building them is linear in the values added.
+     *
+     * @param lists The lists, each with room for at least its count.
+     * @param counts The number of values in each list.
+     * @param list Which list to add to.
+     * @param value The value to add.
+     */
+    static void append(int[][] lists, int[] counts, int list, int value) {
+        if (counts[list] == lists[list].length)
+            lists[list] = Arrays.copyOf(lists[list], Math.max(4, counts[list] * 2));
+
+        lists[list][counts[list]++] = value;
+    }
+
+    /**
+     * Cuts every list down to the values in it, once they have all been added.
+     *
+     * @param lists The lists.
+     * @param counts The number of values in each list.
+     * @return The lists.
+     */
+    static int[][] trim(int[][] lists, int[] counts) {
+        for (int i = 0; i < lists.length; i++)
+            if (lists[i].length != counts[i]) lists[i] = Arrays.copyOf(lists[i], counts[i]);
+
+        return lists;
+    }
+}
@@ -23,14 +23,6 @@
  */
 package cherry.frontend.grammar;
 
-import java.util.EnumMap;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
 /**
  * This represents the entire grammar of the Cherry language. The following snippet
  * is from the previous but not removed {@code Rule.java} that meant to do what
@@ -128,15 +120,6 @@ public enum Grammar {
     public final Symbol[][] bodies;
     /** The name of this rule, specifically named after the {@code NonTerminal} that it represents. */
     public final String name = name().toLowerCase();
-    /**
-     * The FIRST sets of this language.
-     */
-    public static final Map<NonTerminal, Set<Symbol>> firsts = new HashMap<>();
-    /**
-     * The follow sets of this language. The follows map follows the same rules
-     * as the firsts map, due to its inherit nature.
-     */
-    public static final Map<Integer, Set<Integer>> follows = new HashMap<>();
     
     /**
      * Constructs a new {@code Grammar} rule with the given body.
@@ -162,144 +145,4 @@ public enum Grammar {
         
         return rule;
     }
-    
-    /**
-     * The language FIRST sets are used to determine what lookahead is available
-     * when we are parsing, typically when we are looking for a {@code NonTerminal},
-     * but this is only useful when we are doing LL parsing, which the parser of
-     * this language will not; we will be using LR, specifically GLR, parsing.
-     * 
-     * <p>
-     * The following are a few rules that the construction of FIRST sets abide by:
-     *  <ul>
-     *      <li>
-     *          We are only focused on the first thing of the right hand side of
-     *          a rule, hence the name FIRST set.
-     *      </li>
-     *      <li>
-     *          When building FIRST sets we need to keep one thing in mind: that
-     *          if the first of a rule is a {@code NonTerminal} then we need to
-     *          add the first of that symbol to the first of the current symbol.
-     *          This typically means that we must continually loop through each
-     *          rule until all sets are properly built.
-     *      </li>
-     *      <li>
-     *          If the current rule is nullable then we add the "ε" to the first
-     *          of that rule. The nullable "ε" is highly useful during parsing
-     *          so we want to make sure that we keep it.
-     *      </li>
-     *  </ul>
-     * <br>
-     * To get a little bit more intuitive about how building the FIRST sets works,
-     * let's look at the specifics of the algorithm with pattern matching:
-     *  <ol>
-     *      <li>
-     *          {@code FIRST(S → ε) = ε;} <br>
-     *          We already sort of explained this, but in detail, if the body of
-     *          a rule such that: {@code S → ε} is possible, then {@code ε} is 
-     *          included in the first of rule {@code S}.
-     *      </li>
-     *      <li>
-     *          {@code FIRST(S → αBß) = B, if B is a Terminal and α is null or ε.} <br>
-     *          The basic premise of this is that, if we take a rule: {@code S → αBß}
-     *          and where {@code B} is a terminal and there is no symbols before
-     *          it or {@code α → ε} then we add {@code B} to the FIRST of rule
-     *          {@code S}.
-     *      </li>
-     *      <li>
-     *          {@code FIRST(S → αBß) = FIRST(α) if α is a NonTerminal and does not contain ε.} <br>
-     *          So this would have a similar effect to the last step, but if
-     *          {@code α} is not null and is a {@code NonTerminal} respectively,
-     *          then we add the FIRST of that {@code NonTerinal} to the current
-     *          rule.
-     *      </li>
-     *      <li>
-     *          {@code FIRST(S → αBß) = FIRST(α - ε) U FIRST(B), if α is a NonTerminal and it contains ε in one of it's bodies.}
-     *          This is because if the first is nullable, then it needs to be able
-     *          what can replace the first as a first, this is typically a Terminal.
-     *          However, this means that the algorithm can continue to search the
-     *          rule for a valid first if one does not exist.
-     *      </li>
-     *  </ol>
-     * <br>
-     * To finalize the algorithm portion, as it wasn't talked about: the algorithm
-     * works in multiple steps. It 1) Checks each rule for a first, it places all
-     * the available {@code Terminals} into the FIRST for that rule; 2) if the
-     * first of the rule is {@code NonTerminal} then it attempts to add all the
-     * firsts for that rule into the current one; 3) It is likely that the algorithm
-     * will not obtain all the firsts in a single pass, so it will continue to
-     * steps one and two until it cannot add anymore into the FIRST of any rule.
-     * </p>
-     */
-    public static void fillFirsts() {
-        boolean finished;
-        
-        // first add all the NonTerminals into the map
-        for (Grammar rule : values()) {
-            firsts.put(NonTerminal.get(rule.ordinal()), new HashSet<>());
-        }
-        
-        // use a do statement to collect all the firsts and then add all the firsts
-        // to their corresponding NonTerminals.
-        do {
-            finished = false;
-            
-            try {
-                for (Grammar rule : values()) {
-                    Set<Symbol> ruleFirsts = getFirstsFor(rule, firsts);
-
-                    if (firsts.get(NonTerminal.get(rule.ordinal())).addAll(ruleFirsts))
-                        finished = true;
-                }
-            } catch (Throwable t) {
-                Logger.getLogger(Grammar.class.getName()).log(Level.SEVERE, t.getMessage(), t);
-            }
-        } while (finished);
-    }
-    
-    /**
-     * Follows the rules stated by the {@code firsts()} method.
-     */
-    private static Set<Symbol> getFirstsFor(Grammar rule, Map<NonTerminal, Set<Symbol>> rules) {
-        Set<Symbol> result = new HashSet<>();
-        
-        for (Symbol[] body : rule.bodies) {
-            for (Symbol symbol : body) {
-                if (symbol instanceof Terminal) {
-                    result.add(symbol);
-                    rules.get(NonTerminal.get(rule.ordinal())).add(symbol);
-                    break;
-                }
-                
-                // else if symbol is an instance of NonTerminal
-                
-                // check if the rule we are getting the FIRST for contains ε
-                result.addAll(getFirstsFor(Grammar.get(symbol.getIndex()), rules));
-                
-//                if (result.contains(Terminal.EPSILON)) {
-//                    // check set size
-//                    if (result.size() > 1) {
-//                        // add and break;
-//                        rules.get((NonTerminal)symbol).addAll(result);
-//                        break;
-//                    }
-//                    
-//                    // else
-//                    // add all but the epsilon and continue.
-//                    result.remove(Terminal.EPSILON);
-//                    rules.get((NonTerminal)symbol).addAll(result);
-//                }
-            }
-        }
-        
-        return result;
-    }
-    
-    /**
-     * 
-     */
-    private static Map<Integer, Set<Integer>> follows() {
-        
-        return null;
-    }
 }
@@ -0,0 +1,358 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.grammar;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Everything worked out about the {@code Grammar} before it can be parsed with:
+ * which rules are nullable, and the FIRST and FOLLOW sets of every rule. The
+ * grammar never changes while the compiler runs, so this is worked out a single
+ * time, the first time any thread asks for it, and never changed after; every
+ * parser thread shares the same analysis without locking.
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+public final class GrammarAnalysis {
+    /** Whether each rule, by ordinal, is nullable. */
+    private final boolean[] nullable;
+    /**
+     * The FIRST set of each rule by ordinal, as a set of {@code Terminal}s kept
+     * by {@code Bitsets}. {@code ε} is in the set of every nullable rule.
+     */
+    private final long[][] firsts;
+    /**
+     * The FOLLOW set of each rule by ordinal, as a set of {@code Terminal}s kept
+     * by {@code Bitsets}; the end of the stream follows the start rule.
+     */
+    private final long[][] follows;
+    /** The FIRST sets as symbols, for the diagnostics. */
+    private final Map<NonTerminal, Set<Symbol>> firstSymbols;
+    /** The FOLLOW sets as symbols, for the diagnostics. */
+    private final Map<NonTerminal, Set<Symbol>> followSymbols;
+
+    /**
+     * Works out the analysis of the given rules, once for the whole process:
+     * first the nullable rules, then the FIRST sets, then the FOLLOW sets. The
+     * FIRST of a rule takes in each terminal its bodies can begin with, and the
+     * FIRST of every {@code NonTerminal} that can begin them, which is carried
+     * over with a worklist so no set is worked out twice. {@code ε} is in the
+     * FIRST of every nullable rule.
+     *
+     * @param rules Every rule of the grammar, in order.
+     */
+    GrammarAnalysis(Grammar[] rules) {
+        boolean[] nullable = nullables(rules);
+        long[][] sets = new long[rules.length][];
+        // The rules whose FIRST takes in the FIRST of each rule.
+        int[][] dependents = new int[rules.length][0];
+        int[] counts = new int[rules.length];
+
+        for (Grammar rule : rules) {
+            long[] set = sets[rule.ordinal()] = Bitsets.create();
+
+            if (nullable[rule.ordinal()])
+                Bitsets.add(set, Terminal.EPSILON.ordinal());
+
+            for (Symbol[] body : rule.bodies) {
+                for (Symbol symbol : body) {
+                    if (symbol == Terminal.EPSILON) continue;
+
+                    if (symbol instanceof Terminal) {
+                        Bitsets.add(set, symbol.getIndex());
+                        break;
+                    }
+
+                    Bitsets.append(dependents, counts, symbol.getIndex(), rule.ordinal());
+
+                    if (!nullable[symbol.getIndex()]) break;
+                }
+            }
+        }
+
+        propagate(sets, Bitsets.trim(dependents, counts), Terminal.EPSILON.ordinal());
+
+        this.nullable = nullable;
+        this.firsts = sets;
+        this.follows = follows(rules, nullable, sets);
+        this.firstSymbols = symbols(sets);
+        this.followSymbols = symbols(this.follows);
+    }
+
+    /**
+     * Returns the analysis of the {@code Grammar}, working it out if no one has
+     * asked for it yet.
+     *
+     * @return The analysis of the grammar.
+     */
+    public static GrammarAnalysis get() {
+        return Holder.ANALYSIS;
+    }
+
+    /**
+     * @param rule The rule to check.
+     * @return Whether the rule can derive nothing at all.
+     */
+    public boolean nullable(NonTerminal rule) {
+        return nullable[rule.ordinal()];
+    }
+
+    /**
+     * @param rule The rule to get the FIRST set of.
+     * @return A copy of the FIRST set of the rule, kept as bits by the ordinal
+     *      of each {@code Terminal}; {@code ε} is in it if the rule is nullable.
+     */
+    public long[] first(NonTerminal rule) {
+        return firsts[rule.ordinal()].clone();
+    }
+
+    /**
+     * @param rule The rule to look in the FIRST set of.
+     * @param terminal The terminal to look for.
+     * @return Whether the terminal is in the FIRST set of the rule.
+     */
+    public boolean first(NonTerminal rule, Terminal terminal) {
+        return Bitsets.contains(firsts[rule.ordinal()], terminal.ordinal());
+    }
+
+    /**
+     * @return The FIRST set of every rule as symbols, which cannot be changed.
+     */
+    public Map<NonTerminal, Set<Symbol>> firsts() {
+        return firstSymbols;
+    }
+
+    /**
+     * @param rule The rule to get the FOLLOW set of.
+     * @return A copy of the FOLLOW set of the rule, kept as bits by the ordinal
+     *      of each {@code Terminal}.
+     */
+    public long[] follow(NonTerminal rule) {
+        return follows[rule.ordinal()].clone();
+    }
+
+    /**
+     * @param rule The rule to look in the FOLLOW set of.
+     * @param terminal The terminal to look for.
+     * @return Whether the terminal can come right after the rule.
+     */
+    public boolean follow(NonTerminal rule, Terminal terminal) {
+        return Bitsets.contains(follows[rule.ordinal()], terminal.ordinal());
+    }
+
+    /**
+     * @return The FOLLOW set of every rule as symbols, which cannot be changed.
+     */
+    public Map<NonTerminal, Set<Symbol>> follows() {
+        return followSymbols;
+    }
+
+    /**
+     * Finds every rule that can derive nothing at all. Each body keeps count of
+     * its symbols that are not yet known to be nullable, and once that count
+     * reaches zero the head of the body is nullable, which counts down every
+     * body the head appears in. Bodies with a {@code Terminal} in them are never
+     * counted at all.
+     *
+     * @param rules Every rule of the grammar.
+     * @return Whether each rule, by ordinal, is nullable.
+     */
+    private static boolean[] nullables(Grammar[] rules) {
+        int bodies = 0;
+
+        for (Grammar rule : rules) bodies += rule.bodies.length;
+
+        boolean[] nullable = new boolean[rules.length];
+        int[] heads = new int[bodies], remaining = new int[bodies];
+        // The bodies each rule appears in, once for every time it appears.
+        int[][] uses = new int[rules.length][0];
+        int[] counts = new int[rules.length];
+        int[] stack = new int[rules.length];
+        int top = 0, index = 0;
+
+        for (Grammar rule : rules) {
+            for (Symbol[] body : rule.bodies) {
+                int current = index++;
+                boolean possible = true;
+
+                heads[current] = rule.ordinal();
+
+                for (Symbol symbol : body)
+                    if (symbol instanceof Terminal && symbol != Terminal.EPSILON) possible = false;
+
+                if (!possible) continue;
+
+                for (Symbol symbol : body) {
+                    if (symbol == Terminal.EPSILON) continue;
+
+                    remaining[current]++;
+                    Bitsets.append(uses, counts, symbol.getIndex(), current);
+                }
+
+                if (remaining[current] == 0 && !nullable[rule.ordinal()]) {
+                    nullable[rule.ordinal()] = true;
+                    stack[top++] = rule.ordinal();
+                }
+            }
+        }
+
+        Bitsets.trim(uses, counts);
+
+        while (top > 0) {
+            for (int use : uses[stack[--top]]) {
+                if (--remaining[use] == 0 && !nullable[heads[use]]) {
+                    nullable[heads[use]] = true;
+                    stack[top++] = heads[use];
+                }
+            }
+        }
+
+        return nullable;
+    }
+
+    /**
+     * Works out the FOLLOW set of every rule, the terminals that can come right
+     * after it. The end of the stream follows the start rule; for every
+     * {@code NonTerminal B} in a body {@code A → αBß}, {@code FIRST(ß - ε)}
+     * follows {@code B}, and if {@code ß} is nullable so does everything that
+     * follows {@code A}. The first of those is added straight away, the second
+     * is written down and carried over with a worklist, the same as the FIRST
+     * sets are.
+     *
+     * @param rules Every rule of the grammar.
+     * @param nullable Whether each rule is nullable.
+     * @param firsts The FIRST set of each rule.
+     * @return The FOLLOW set of each rule, by ordinal.
+     */
+    private static long[][] follows(Grammar[] rules, boolean[] nullable, long[][] firsts) {
+        long[][] sets = new long[rules.length][];
+        // The rules whose FOLLOW takes in the FOLLOW of each rule.
+        int[][] dependents = new int[rules.length][0];
+        int[] counts = new int[rules.length];
+
+        for (int i = 0; i < rules.length; i++) sets[i] = Bitsets.create();
+
+        Bitsets.add(sets[0], Terminal.EOTS.ordinal());
+
+        for (Grammar rule : rules) {
+            for (Symbol[] body : rule.bodies) {
+                for (int i = 0; i < body.length; i++) {
+                    if (!(body[i] instanceof NonTerminal)) continue;
+
+                    long[] set = sets[body[i].getIndex()];
+                    boolean restNullable = true;
+
+                    // Whatever can begin the rest of the body follows the rule.
+                    for (int j = i + 1; j < body.length && restNullable; j++) {
+                        Symbol next = body[j];
+
+                        if (next == Terminal.EPSILON) continue;
+
+                        if (next instanceof Terminal) {
+                            Bitsets.add(set, next.getIndex());
+                            restNullable = false;
+                        } else {
+                            Bitsets.addAll(set, firsts[next.getIndex()], Terminal.EPSILON.ordinal());
+                            restNullable = nullable[next.getIndex()];
+                        }
+                    }
+
+                    if (restNullable && rule.ordinal() != body[i].getIndex())
+                        Bitsets.append(dependents, counts, rule.ordinal(), body[i].getIndex());
+                }
+            }
+        }
+
+        propagate(sets, Bitsets.trim(dependents, counts), Terminal.EPSILON.ordinal());
+
+        return sets;
+    }
+
+    /**
+     * Adds the set of each rule into the sets of the rules that depend on it,
+     * for as long as any set still grows. Every rule starts out on the worklist
+     * and is only put back when its own set grows.
+     *
+     * @param sets The set of each rule, by ordinal.
+     * @param dependents The rules that take in the set of each rule.
+     * @param except The ordinal of a terminal that is never carried over.
+     */
+    private static void propagate(long[][] sets, int[][] dependents, int except) {
+        int[] worklist = new int[sets.length];
+        boolean[] queued = new boolean[sets.length];
+        int head = 0, size = sets.length;
+
+        for (int i = 0; i < sets.length; i++) {
+            worklist[i] = i;
+            queued[i] = true;
+        }
+
+        while (size > 0) {
+            int rule = worklist[head];
+
+            head = (head + 1) % worklist.length;
+            size--;
+            queued[rule] = false;
+
+            for (int dependent : dependents[rule]) {
+                if (Bitsets.addAll(sets[dependent], sets[rule], except) && !queued[dependent]) {
+                    worklist[(head + size++) % worklist.length] = dependent;
+                    queued[dependent] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Turns sets of terminals into sets of symbols that cannot be changed.
+     *
+     * @param sets The sets of each rule, by ordinal.
+     * @return The sets by the {@code NonTerminal} of each rule.
+     */
+    private static Map<NonTerminal, Set<Symbol>> symbols(long[][] sets) {
+        Map<NonTerminal, Set<Symbol>> result = new EnumMap<>(NonTerminal.class);
+
+        for (int rule = 0; rule < sets.length; rule++) {
+            Set<Symbol> set = new LinkedHashSet<>();
+
+            for (Terminal terminal : Terminal.values())
+                if (Bitsets.contains(sets[rule], terminal.ordinal())) set.add(terminal);
+
+            result.put(NonTerminal.get(rule), Collections.unmodifiableSet(set));
+        }
+
+        return Collections.unmodifiableMap(result);
+    }
+
+    /** Holds the analysis, which is worked out when this class is first used. */
+    private static final class Holder {
+        /** The analysis of the grammar. */
+        static final GrammarAnalysis ANALYSIS = new GrammarAnalysis(Grammar.values());
+    }
+}
@@ -0,0 +1,475 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.grammar;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The LALR(1) action and goto tables of the {@code Grammar}, packed by row
+ * displacement into a few {@code int[]}s so that parsing is a loop of array
+ * lookups. Every row is laid over the same array at an offset where its cells
+ * do not land on any cell of a row placed before it, and every cell remembers
+ * the state it belongs to so a lookup can tell its own cells from others.
+ *
+ * <p>
+ * The columns of a row are the ordinals of the {@code Terminal}s for actions,
+ * followed by the ordinals of the {@code NonTerminal}s for gotos. An action is
+ * a single {@code int}, its kind in the lowest two bits and the state shifted
+ * to, the production reduced by, or the fork taken in the rest. A cell with
+ * more than one action, which is a conflict of the grammar, forks: it points
+ * at the list of every one of its actions for a GLR parser to follow all of.
+ * Production {@code 0} is {@code document' ::= document}, so reducing by it
+ * accepts.
+ * </p>
+ *
+ * <p>
+ * The build writes the tables into the class {@code ParseTableData} beside
+ * this one with {@code TableCompiler}, so that they are read in rather than
+ * made each time the compiler starts. The tables remember the grammar they were
+ * made from, and are made over again if that grammar has since changed or the
+ * class is missing, as it is when the sources are compiled on their own.
+ * </p>
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+public final class ParseTable {
+    /** The kind of action of an empty cell. */
+    public static final int ERROR = 0;
+    /** The kind of action that shifts to a state. */
+    public static final int SHIFT = 1;
+    /** The kind of action that reduces by a production. */
+    public static final int REDUCE = 2;
+    /** The kind of action that is a list of actions. */
+    public static final int FORK = 3;
+    /** Reducing by the start production, which ends parsing. */
+    public static final int ACCEPT = REDUCE;
+    /** The number of terminals, where the columns of the gotos begin. */
+    static final int TERMINALS = Terminal.values().length;
+    /** The number of columns in a row. */
+    static final int COLUMNS = TERMINALS + NonTerminal.values().length;
+    /** The name of the class the build writes the tables into. */
+    static final String DATA = ParseTable.class.getName() + "Data";
+    /** The first four bytes of the written tables, {@code CPTB}. */
+    private static final int MAGIC = 0x43505442;
+    /** The layout of the written tables, changed whenever the layout does. */
+    private static final int VERSION = 1;
+
+    /** The number of states. */
+    private final int states;
+    /** Where the row of each state begins in {@code next}. */
+    private final int[] base;
+    /** The cells of every row, laid over one another. */
+    private final int[] next;
+    /** The state each cell of {@code next} belongs to, or -1 if none. */
+    private final int[] check;
+    /** The actions of every fork: how many there are, then each of them. */
+    private final int[] forks;
+    /** The ordinal of the rule each production reduces to, -1 for the start. */
+    private final int[] heads;
+    /** The symbols of each production, terminals then nonterminals by column. */
+    private final int[][] bodies;
+    /** The conflicts of the grammar. */
+    private final List<Conflict> conflicts;
+    /** How long the tables took to make or read in, in nanoseconds. */
+    private final long nanos;
+    /** Whether the tables were read in from the build. */
+    private final boolean loaded;
+
+    /**
+     * Constructs a new {@code ParseTable} from tables already packed.
+     *
+     * @param states The number of states.
+     * @param base Where the row of each state begins.
+     * @param next The cells of every row.
+     * @param check The state of each cell.
+     * @param forks The actions of every fork.
+     * @param heads The rule of each production.
+     * @param bodies The symbols of each production.
+     * @param conflicts The conflicts of the grammar.
+     * @param nanos How long the tables took to make or read in.
+     * @param loaded Whether the tables were read in from the build.
+     */
+    ParseTable(int states, int[] base, int[] next, int[] check, int[] forks,
+               int[] heads, int[][] bodies, List<Conflict> conflicts, long nanos, boolean loaded) {
+        this.states = states;
+        this.base = base;
+        this.next = next;
+        this.check = check;
+        this.forks = forks;
+        this.heads = heads;
+        this.bodies = bodies;
+        this.conflicts = Collections.unmodifiableList(conflicts);
+        this.nanos = nanos;
+        this.loaded = loaded;
+    }
+
+    /**
+     * Returns the tables of the {@code Grammar}, reading them in or making them
+     * if no one has asked for them yet.
+     *
+     * @return The parse tables of the grammar.
+     */
+    public static ParseTable get() {
+        return Holder.TABLE;
+    }
+
+    /**
+     * @param state The state the parser is in.
+     * @param terminal The ordinal of the terminal next in the input.
+     * @return The action to take.
+     */
+    public int action(int state, int terminal) {
+        int index = base[state] + terminal;
+        return check[index] == state ? next[index] : ERROR;
+    }
+
+    /**
+     * @param state The state uncovered by a reduction.
+     * @param rule The ordinal of the rule that was reduced to.
+     * @return The state to go to, or -1 if there is none.
+     */
+    public int goTo(int state, int rule) {
+        int index = base[state] + TERMINALS + rule;
+        return check[index] == state ? next[index] >>> 2 : -1;
+    }
+
+    /**
+     * @param action An action.
+     * @return The kind of the action.
+     */
+    public static int kind(int action) {
+        return action & 3;
+    }
+
+    /**
+     * @param action An action.
+     * @return The state a shift goes to, the production a reduction is by, or
+     *      where the actions of a fork are.
+     */
+    public static int target(int action) {
+        return action >>> 2;
+    }
+
+    /**
+     * @param fork An action that forks.
+     * @return The number of actions the fork is made of.
+     */
+    public int forks(int fork) {
+        return forks[target(fork)];
+    }
+
+    /**
+     * @param fork An action that forks.
+     * @param index Which of its actions to get.
+     * @return One of the actions the fork is made of.
+     */
+    public int fork(int fork, int index) {
+        return forks[target(fork) + 1 + index];
+    }
+
+    /**
+     * @param production A production.
+     * @return The ordinal of the rule the production reduces to, or -1 for
+     *      the start production.
+     */
+    public int head(int production) {
+        return heads[production];
+    }
+
+    /**
+     * @param production A production.
+     * @return The number of symbols in the body of the production.
+     */
+    public int length(int production) {
+        return bodies[production].length;
+    }
+
+    /**
+     * @return The number of states.
+     */
+    public int states() {
+        return states;
+    }
+
+    /**
+     * @return The number of productions, including the start production.
+     */
+    public int productions() {
+        return heads.length;
+    }
+
+    /**
+     * @return The number of {@code int}s the packed tables take up.
+     */
+    public int size() {
+        return base.length + next.length + check.length + forks.length;
+    }
+
+    /**
+     * @return The number of {@code int}s the tables would take up unpacked.
+     */
+    public int denseSize() {
+        return states * COLUMNS;
+    }
+
+    /**
+     * @return How long the tables took to make or read in, in nanoseconds.
+     */
+    public long nanos() {
+        return nanos;
+    }
+
+    /**
+     * @return Whether the tables were read in from the build rather than made
+     *      when they were first asked for.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return The conflicts of the grammar, in order of state.
+     */
+    public List<Conflict> conflicts() {
+        return conflicts;
+    }
+
+    /**
+     * @param production A production.
+     * @return The production written out, as in {@code Grammar.md}.
+     */
+    public String production(int production) {
+        StringBuilder builder = new StringBuilder();
+
+        builder.append(heads[production] < 0 ? "<document'>" : "<" + NonTerminal.get(heads[production]).symbolName() + ">");
+        builder.append(" ::=");
+
+        for (int symbol : bodies[production])
+            builder.append(' ').append(symbol < TERMINALS
+                    ? "\"" + Terminal.values()[symbol].symbolName() + "\""
+                    : "<" + NonTerminal.get(symbol - TERMINALS).symbolName() + ">");
+
+        if (bodies[production].length == 0) builder.append(" ε");
+
+        return builder.toString();
+    }
+
+    /**
+     * Writes the tables out in the layout {@code read} reads them back in.
+     *
+     * @param out Where to write the tables.
+     * @throws IOException If the tables could not be written.
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(fingerprint());
+        out.writeInt(states);
+        write(out, base);
+        write(out, next);
+        write(out, check);
+        write(out, forks);
+        write(out, heads);
+        out.writeInt(bodies.length);
+
+        for (int[] body : bodies) write(out, body);
+
+        out.writeInt(conflicts.size());
+
+        for (Conflict conflict : conflicts) {
+            out.writeInt(conflict.state);
+            out.writeInt(conflict.terminal.ordinal());
+            out.writeBoolean(conflict.shift);
+            write(out, conflict.productions);
+        }
+    }
+
+    /**
+     * Reads in tables written by {@code write}.
+     *
+     * @param bytes The tables, as written.
+     * @param start When reading began, by {@code System.nanoTime()}.
+     * @return The tables, or {@code null} if they were written in another
+     *      layout or for another grammar.
+     * @throws IOException If the tables were cut short.
+     */
+    static ParseTable read(byte[] bytes, long start) throws IOException {
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes));
+
+        if (data.readInt() != MAGIC || data.readInt() != VERSION || data.readLong() != fingerprint())
+            return null;
+
+        int states = data.readInt();
+        int[] base = read(data);
+        int[] next = read(data);
+        int[] check = read(data);
+        int[] forks = read(data);
+        int[] heads = read(data);
+        int[][] bodies = new int[data.readInt()][];
+
+        for (int i = 0; i < bodies.length; i++) bodies[i] = read(data);
+
+        int count = data.readInt();
+        List<Conflict> conflicts = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            int state = data.readInt();
+            Terminal terminal = Terminal.values()[data.readInt()];
+            boolean shift = data.readBoolean();
+
+            conflicts.add(new Conflict(state, terminal, shift, read(data)));
+        }
+
+        return new ParseTable(states, base, next, check, forks, heads, bodies, conflicts,
+                              System.nanoTime() - start, true);
+    }
+
+    /***/
+    private static void write(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+
+        for (int value : values) out.writeInt(value);
+    }
+
+    /***/
+    private static int[] read(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+
+        for (int i = 0; i < values.length; i++) values[i] = in.readInt();
+
+        return values;
+    }
+
+    /**
+     * Hashes the symbols and rules of the grammar, so tables written for one
+     * grammar are never read in for another. This only walks the rules, and
+     * so costs next to nothing beside making the tables.
+     *
+     * @return The FNV-1a hash of the grammar.
+     */
+    private static long fingerprint() {
+        long hash = 0xcbf29ce484222325L;
+
+        for (Terminal terminal : Terminal.values()) hash = hash(hash, terminal.name().hashCode());
+        for (NonTerminal rule : NonTerminal.values()) hash = hash(hash, rule.name().hashCode());
+
+        for (Grammar rule : Grammar.values()) {
+            hash = hash(hash, rule.bodies.length);
+
+            for (Symbol[] body : rule.bodies) {
+                hash = hash(hash, body.length);
+
+                for (Symbol symbol : body)
+                    hash = hash(hash, symbol instanceof Terminal ? symbol.getIndex() : ~symbol.getIndex());
+            }
+        }
+
+        return hash;
+    }
+
+    /***/
+    private static long hash(long hash, int value) {
+        for (int shift = 0; shift < 32; shift += 8)
+            hash = (hash ^ (value >>> shift & 0xff)) * 0x100000001b3L;
+
+        return hash;
+    }
+
+    /**
+     * Reads in the tables the build wrote, or makes them if there are none or
+     * they were written for some other grammar. The build writes them as
+     * strings of one character per byte rather than as a resource, since
+     * loading a class is far cheaper than the first look up of a resource.
+     *
+     * @return The tables of the grammar.
+     */
+    private static ParseTable load() {
+        long start = System.nanoTime();
+
+        try {
+            StringBuilder builder = new StringBuilder();
+
+            for (String chunk : (String[]) Class.forName(DATA).getDeclaredField("TABLES").get(null))
+                builder.append(chunk);
+
+            ParseTable table = read(builder.toString().getBytes(StandardCharsets.ISO_8859_1), start);
+
+            if (table != null) return table;
+        } catch (ReflectiveOperationException | IOException ex) {
+            // Without tables from the build, they are made here instead.
+        }
+
+        return TableGenerator.generate(Grammar.values(), GrammarAnalysis.get());
+    }
+
+    /**
+     * A cell of the action table with more than one action in it.
+     */
+    public static final class Conflict {
+        /** The state the conflict is in. */
+        public final int state;
+        /** The terminal the conflict is on. */
+        public final Terminal terminal;
+        /** Whether one of the actions is a shift. */
+        public final boolean shift;
+        /** The productions that could be reduced by. */
+        public final int[] productions;
+
+        /**
+         * Constructs a new {@code Conflict}.
+         *
+         * @param state The state the conflict is in.
+         * @param terminal The terminal the conflict is on.
+         * @param shift Whether one of the actions is a shift.
+         * @param productions The productions that could be reduced by.
+         */
+        Conflict(int state, Terminal terminal, boolean shift, int[] productions) {
+            this.state = state;
+            this.terminal = terminal;
+            this.shift = shift;
+            this.productions = productions;
+        }
+
+        /**
+         * @return Either {@code shift/reduce} or {@code reduce/reduce}.
+         */
+        public String kind() {
+            return shift ? "shift/reduce" : "reduce/reduce";
+        }
+    }
+
+    /** Holds the tables, which are read in or made when this class is first used. */
+    private static final class Holder {
+        /** The parse tables of the grammar. */
+        static final ParseTable TABLE = load();
+    }
+}
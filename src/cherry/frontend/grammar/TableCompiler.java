@@ -0,0 +1,129 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.grammar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Makes the {@code ParseTable} of the {@code Grammar} and writes it into the
+ * source of the class {@code ParseTableData}, which the build does and then
+ * compiles right after compiling everything else, so the tables ship in the
+ * jar and the compiler never has to make them when it starts.
+ *
+ * <p>
+ * Run it with: {@code java -cp Cherry.jar cherry.frontend.grammar.TableCompiler
+ * directory}, where the source is written under the directory by package. The
+ * tables are written one character to a byte in strings short enough for the
+ * constant pool of a class, and are always made from the grammar as it is
+ * now, never read in from a class an earlier build left behind.
+ * </p>
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+public final class TableCompiler {
+    /** The most bytes written to a single string, well under the 65535 a constant may hold. */
+    private static final int CHUNK = 16384;
+    /** The most bytes written to a line of the source. */
+    private static final int LINE = 24;
+
+    /***/
+    private TableCompiler() {}
+
+    /**
+     * @param args The directory to write the source under.
+     * @throws Exception if the source could not be written.
+     */
+    public static void main(String... args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: TableCompiler <directory>");
+            System.exit(1);
+        }
+
+        ParseTable table = TableGenerator.generate(Grammar.values(), GrammarAnalysis.get());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int dot = ParseTable.DATA.lastIndexOf('.');
+        File file = new File(args[0], ParseTable.DATA.replace('.', File.separatorChar) + ".java");
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            table.write(out);
+        }
+
+        file.getParentFile().mkdirs();
+
+        try (PrintWriter out = new PrintWriter(file, StandardCharsets.US_ASCII.name())) {
+            write(out, ParseTable.DATA.substring(0, dot), ParseTable.DATA.substring(dot + 1), bytes.toByteArray());
+        }
+
+        System.out.printf("Wrote %d states, %d ints and %d conflicts to %s%n",
+                table.states(), table.size(), table.conflicts().size(), file);
+    }
+
+    /**
+     * Writes the source of the class holding the tables.
+     *
+     * @param out Where to write the source.
+     * @param pack The package of the class.
+     * @param name The name of the class.
+     * @param bytes The tables, as written by {@code ParseTable#write}.
+     */
+    private static void write(PrintWriter out, String pack, String name, byte[] bytes) {
+        out.println("// Written by TableCompiler from the Grammar; do not edit.");
+        out.println("package " + pack + ";");
+        out.println();
+        out.println("/** The parse tables of the grammar, one character to a byte. */");
+        out.println("final class " + name + " {");
+        out.println("    /** The tables in order, split to fit the constant pool. */");
+        out.print("    static final String[] TABLES = {");
+
+        for (int chunk = 0; chunk < bytes.length; chunk += CHUNK) {
+            int end = Math.min(bytes.length, chunk + CHUNK);
+
+            out.println(chunk == 0 ? "" : ",");
+
+            for (int line = chunk; line < end; line += LINE) {
+                out.print(line == chunk ? "        \"" : "      + \"");
+
+                for (int i = line; i < Math.min(end, line + LINE); i++) {
+                    int value = bytes[i] & 0xff;
+
+                    // Octal escapes, since a unicode escape of a line break
+                    // would end the string before it was ever read.
+                    if (value >= ' ' && value < 0x7f && value != '"' && value != '\\') out.print((char) value);
+                    else out.printf("\\%03o", value);
+                }
+
+                out.print(line + LINE < end ? "\"\n" : "\"");
+            }
+        }
+
+        out.println();
+        out.println("    };");
+        out.println("}");
+    }
+}
@@ -0,0 +1,555 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.grammar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Makes the {@code ParseTable} of a grammar. The states are the LR(0) item
+ * sets of the grammar, and the lookaheads of their items are carried from
+ * state to state until none of them grow any more, which gives the same
+ * lookaheads as merging the LR(1) states of the grammar by their cores without
+ * ever making the LR(1) states.
+ *
+ * <p>
+ * An item is a production with a dot somewhere in its body, numbered so that
+ * the items of a production follow one another: the item after the dot is
+ * moved is always the next one. Symbols are numbered by column, the ordinals
+ * of the {@code Terminal}s followed by those of the {@code NonTerminal}s, and
+ * {@code ε} is left out of every body.
+ * </p>
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+final class TableGenerator {
+    /** The number of terminals, where the nonterminals begin. */
+    private static final int TERMINALS = ParseTable.TERMINALS;
+
+    /** The ordinal of the rule of each production, -1 for the start. */
+    private final int[] heads;
+    /** The symbols of each production. */
+    private final int[][] bodies;
+    /** The productions of each rule. */
+    private final int[][] productions;
+    /** The first item of each production. */
+    private final int[] itemBase;
+    /** The production of each item. */
+    private final int[] itemProduction;
+    /** Where the dot is in each item. */
+    private final int[] itemDot;
+    /** Whether each rule is nullable. */
+    private final boolean[] nullable;
+    /** The FIRST set of each rule. */
+    private final long[][] firsts;
+
+    /** The kernel items of each state, in order. */
+    private final List<int[]> kernels = new ArrayList<>();
+    /** The state each column goes to from each state, -1 for none. */
+    private final List<int[]> transitions = new ArrayList<>();
+    /** The lookaheads of the kernel items of each state. */
+    private final List<long[][]> lookaheads = new ArrayList<>();
+
+    /**
+     * Lays out the productions and items of the grammar.
+     *
+     * @param rules Every rule of the grammar, in order.
+     * @param analysis The analysis of the grammar.
+     */
+    private TableGenerator(Grammar[] rules, GrammarAnalysis analysis) {
+        List<int[]> found = new ArrayList<>();
+        int count = 1;
+
+        for (Grammar rule : rules) count += rule.bodies.length;
+
+        heads = new int[count];
+
+        // The start production, which accepts once it is reduced.
+        found.add(new int[] { TERMINALS + rules[0].ordinal() });
+        heads[0] = -1;
+
+        productions = new int[rules.length][];
+        nullable = new boolean[rules.length];
+        firsts = new long[rules.length][];
+
+        for (Grammar rule : rules) {
+            NonTerminal head = NonTerminal.get(rule.ordinal());
+
+            productions[rule.ordinal()] = new int[rule.bodies.length];
+            nullable[rule.ordinal()] = analysis.nullable(head);
+            firsts[rule.ordinal()] = analysis.first(head);
+
+            for (int i = 0; i < rule.bodies.length; i++) {
+                int[] body = new int[rule.bodies[i].length];
+                int length = 0;
+
+                for (Symbol symbol : rule.bodies[i]) {
+                    if (symbol == Terminal.EPSILON) continue;
+
+                    body[length++] = symbol instanceof Terminal ? symbol.getIndex() : TERMINALS + symbol.getIndex();
+                }
+
+                body = Arrays.copyOf(body, length);
+                productions[rule.ordinal()][i] = found.size();
+                heads[found.size()] = rule.ordinal();
+                found.add(body);
+            }
+        }
+
+        bodies = found.toArray(new int[0][]);
+        itemBase = new int[bodies.length + 1];
+
+        for (int i = 0; i < bodies.length; i++)
+            itemBase[i + 1] = itemBase[i] + bodies[i].length + 1;
+
+        itemProduction = new int[itemBase[bodies.length]];
+        itemDot = new int[itemProduction.length];
+
+        for (int i = 0; i < bodies.length; i++) {
+            for (int dot = 0; dot <= bodies[i].length; dot++) {
+                itemProduction[itemBase[i] + dot] = i;
+                itemDot[itemBase[i] + dot] = dot;
+            }
+        }
+    }
+
+    /**
+     * Makes the parse tables of a grammar, reporting every conflict in them.
+     *
+     * @param rules Every rule of the grammar, in order.
+     * @param analysis The analysis of the grammar.
+     * @return The tables of the grammar.
+     */
+    static ParseTable generate(Grammar[] rules, GrammarAnalysis analysis) {
+        long start = System.nanoTime();
+        TableGenerator generator = new TableGenerator(rules, analysis);
+
+        generator.states();
+        generator.lookaheads();
+
+        return generator.pack(start);
+    }
+
+    /**
+     * Finds every LR(0) state, starting from the start production and following
+     * every symbol that can come after the dot.
+     */
+    private void states() {
+        Map<Kernel, Integer> known = new HashMap<>();
+        int[] start = { itemBase[0] };
+
+        known.put(new Kernel(start), 0);
+        kernels.add(start);
+
+        for (int state = 0; state < kernels.size(); state++) {
+            int[] items = closure(kernels.get(state));
+            int[][] moved = new int[ParseTable.COLUMNS][];
+            int[] counts = new int[ParseTable.COLUMNS];
+            int[] targets = new int[ParseTable.COLUMNS];
+
+            // Moving the dot over each symbol, the items after it stay in order.
+            for (int item : items) {
+                int symbol = after(item);
+
+                if (symbol < 0) continue;
+
+                if (moved[symbol] == null) moved[symbol] = new int[4];
+                else if (counts[symbol] == moved[symbol].length) moved[symbol] = Arrays.copyOf(moved[symbol], counts[symbol] * 2);
+
+                moved[symbol][counts[symbol]++] = item + 1;
+            }
+
+            Arrays.fill(targets, -1);
+
+            for (int symbol = 0; symbol < ParseTable.COLUMNS; symbol++) {
+                if (moved[symbol] == null) continue;
+
+                int[] kernel = Arrays.copyOf(moved[symbol], counts[symbol]);
+                Arrays.sort(kernel);
+
+                Integer target = known.get(new Kernel(kernel));
+
+                if (target == null) {
+                    target = kernels.size();
+                    known.put(new Kernel(kernel), target);
+                    kernels.add(kernel);
+                }
+
+                targets[symbol] = target;
+            }
+
+            transitions.add(targets);
+        }
+    }
+
+    /**
+     * Carries the lookaheads of every kernel item into the items of its closure
+     * and from there into the kernels of the states they move to, for as long as
+     * any of them grow. A state is only looked at again when the lookaheads of
+     * one of its kernel items have grown.
+     */
+    private void lookaheads() {
+        int states = kernels.size();
+        int[] worklist = new int[states];
+        boolean[] queued = new boolean[states];
+        int head = 0, size = 0;
+
+        for (int[] kernel : kernels) {
+            long[][] sets = new long[kernel.length][];
+
+            for (int i = 0; i < kernel.length; i++) sets[i] = Bitsets.create();
+
+            lookaheads.add(sets);
+        }
+
+        Bitsets.add(lookaheads.get(0)[0], Terminal.EOTS.ordinal());
+        worklist[size++] = 0;
+        queued[0] = true;
+
+        while (size > 0) {
+            int state = worklist[head];
+
+            head = (head + 1) % states;
+            size--;
+            queued[state] = false;
+
+            Closure closure = closure(state);
+
+            for (int i = 0; i < closure.items.length; i++) {
+                int symbol = after(closure.items[i]);
+
+                if (symbol < 0) continue;
+
+                int target = transitions.get(state)[symbol];
+                int[] kernel = kernels.get(target);
+                int index = Arrays.binarySearch(kernel, closure.items[i] + 1);
+
+                if (Bitsets.addAll(lookaheads.get(target)[index], closure.lookaheads[i], -1) && !queued[target]) {
+                    worklist[(head + size++) % states] = target;
+                    queued[target] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills in every action and goto, then packs the rows of the table over one
+     * another, the fullest rows first since those are the hardest to fit.
+     *
+     * @param start When the generation started.
+     * @return The packed tables.
+     */
+    private ParseTable pack(long start) {
+        int states = kernels.size();
+        int[][] rows = new int[states][];
+        int[][] columns = new int[states][];
+        List<ParseTable.Conflict> conflicts = new ArrayList<>();
+        int[] forks = new int[16];
+        int forkCount = 0;
+
+        for (int state = 0; state < states; state++) {
+            int[] targets = transitions.get(state);
+            int[][] actions = new int[ParseTable.COLUMNS][0];
+            int[] counts = new int[ParseTable.COLUMNS];
+            Closure closure = closure(state);
+
+            for (int symbol = 0; symbol < ParseTable.COLUMNS; symbol++)
+                if (targets[symbol] >= 0) Bitsets.append(actions, counts, symbol, targets[symbol] << 2 | ParseTable.SHIFT);
+
+            for (int i = 0; i < closure.items.length; i++) {
+                int item = closure.items[i];
+
+                if (after(item) >= 0) continue;
+
+                int reduce = itemProduction[item] << 2 | ParseTable.REDUCE;
+
+                for (int terminal = 0; terminal < TERMINALS; terminal++)
+                    if (Bitsets.contains(closure.lookaheads[i], terminal))
+                        Bitsets.append(actions, counts, terminal, reduce);
+            }
+
+            int filled = 0;
+
+            Bitsets.trim(actions, counts);
+
+            for (int[] cell : actions) if (cell.length > 0) filled++;
+
+            rows[state] = new int[filled];
+            columns[state] = new int[filled];
+            filled = 0;
+
+            for (int symbol = 0; symbol < ParseTable.COLUMNS; symbol++) {
+                int[] cell = actions[symbol];
+
+                if (cell.length == 0) continue;
+
+                columns[state][filled] = symbol;
+
+                if (cell.length == 1) {
+                    rows[state][filled++] = cell[0];
+                    continue;
+                }
+
+                // More than one action is a conflict, all of them are kept.
+                boolean shift = ParseTable.kind(cell[0]) == ParseTable.SHIFT;
+                int[] reduced = new int[shift ? cell.length - 1 : cell.length];
+
+                for (int i = 0; i < reduced.length; i++)
+                    reduced[i] = ParseTable.target(cell[shift ? i + 1 : i]);
+
+                conflicts.add(new ParseTable.Conflict(state, Terminal.values()[symbol], shift, reduced));
+
+                if (forkCount + cell.length + 1 > forks.length)
+                    forks = Arrays.copyOf(forks, Math.max(forks.length * 2, forkCount + cell.length + 1));
+
+                rows[state][filled++] = forkCount << 2 | ParseTable.FORK;
+                forks[forkCount++] = cell.length;
+
+                for (int action : cell) forks[forkCount++] = action;
+            }
+        }
+
+        // Placing the fullest rows first.
+        int[] order = new int[states];
+        int placed = 0;
+
+        for (int cells = ParseTable.COLUMNS; cells >= 0; cells--)
+            for (int state = 0; state < states; state++)
+                if (rows[state].length == cells) order[placed++] = state;
+
+        int[] base = new int[states];
+        int[] next = new int[ParseTable.COLUMNS * 2];
+        int[] check = new int[next.length];
+        int used = 0;
+
+        Arrays.fill(check, -1);
+
+        for (int state : order) {
+            int offset = 0;
+
+            // The first offset where none of the cells of the row are taken.
+            search:
+            while (true) {
+                for (int column : columns[state]) {
+                    if (offset + column < check.length && check[offset + column] >= 0) {
+                        offset++;
+                        continue search;
+                    }
+                }
+
+                break;
+            }
+
+            // There is always room for a whole row past the last cell used.
+            if (offset + ParseTable.COLUMNS > next.length) {
+                int length = Math.max(next.length * 2, offset + ParseTable.COLUMNS);
+
+                next = Arrays.copyOf(next, length);
+                check = Arrays.copyOf(check, length);
+                Arrays.fill(check, used, length, -1);
+            }
+
+            base[state] = offset;
+
+            for (int i = 0; i < columns[state].length; i++) {
+                next[offset + columns[state][i]] = rows[state][i];
+                check[offset + columns[state][i]] = state;
+                used = Math.max(used, offset + columns[state][i] + 1);
+            }
+        }
+
+        // Every row must be able to look past the last cell used, at cells
+        // that belong to no state.
+        int length = used + ParseTable.COLUMNS;
+        int[] owners = Arrays.copyOf(check, length);
+
+        Arrays.fill(owners, used, length, -1);
+
+        return new ParseTable(states, base, Arrays.copyOf(next, length), owners,
+                              Arrays.copyOf(forks, forkCount), heads, bodies, conflicts, System.nanoTime() - start, false);
+    }
+
+    /**
+     * @param item An item.
+     * @return The symbol after the dot of the item, or -1 if the dot is at the
+     *      end of it.
+     */
+    private int after(int item) {
+        int[] body = bodies[itemProduction[item]];
+        return itemDot[item] < body.length ? body[itemDot[item]] : -1;
+    }
+
+    /**
+     * Finds the LR(0) closure of a kernel: the kernel items, then the first
+     * item of every production of every rule after the dot of an item.
+     *
+     * @param kernel The kernel items of a state.
+     * @return The items of the closure, the kernel items first.
+     */
+    private int[] closure(int[] kernel) {
+        int[] items = Arrays.copyOf(kernel, kernel.length + productions.length);
+        boolean[] added = new boolean[productions.length];
+        int count = kernel.length;
+
+        for (int i = 0; i < count; i++) {
+            int symbol = after(items[i]);
+
+            if (symbol < TERMINALS || added[symbol - TERMINALS]) continue;
+
+            added[symbol - TERMINALS] = true;
+
+            for (int production : productions[symbol - TERMINALS]) {
+                if (count == items.length) items = Arrays.copyOf(items, count * 2);
+
+                items[count++] = itemBase[production];
+            }
+        }
+
+        return Arrays.copyOf(items, count);
+    }
+
+    /**
+     * Finds the closure of a state along with the lookaheads of its items. An
+     * item {@code B → ·γ} added for an item {@code A → α·Bß} with lookaheads
+     * {@code L} takes in {@code FIRST(ß)}, and {@code L} as well if {@code ß}
+     * is nullable; whenever that grows the lookaheads of an item already
+     * looked at, it is looked at again.
+     *
+     * @param state The state.
+     * @return The items of the closure of the state and their lookaheads.
+     */
+    private Closure closure(int state) {
+        int[] items = closure(kernels.get(state));
+        long[][] sets = new long[items.length][];
+        int[] index = new int[productions.length];
+        long[][] kernelSets = lookaheads.get(state);
+        int kernel = kernels.get(state).length;
+        // The items whose lookaheads have grown since they were looked at.
+        boolean[] dirty = new boolean[items.length];
+        boolean changed = true;
+
+        Arrays.fill(index, -1);
+
+        for (int i = 0; i < items.length; i++) {
+            sets[i] = i < kernel ? kernelSets[i].clone() : Bitsets.create();
+            dirty[i] = true;
+
+            // The closure items of a rule are in a row, found from its first.
+            if (i >= kernel) {
+                int head = heads[itemProduction[items[i]]];
+
+                if (index[head] < 0) index[head] = i;
+            }
+        }
+
+        long[] first = Bitsets.create();
+
+        while (changed) {
+            changed = false;
+
+            for (int i = 0; i < items.length; i++) {
+                if (!dirty[i]) continue;
+
+                dirty[i] = false;
+
+                int symbol = after(items[i]);
+
+                if (symbol < TERMINALS) continue;
+
+                // FIRST of what comes after the rule, and whether all of it is nullable.
+                int[] body = bodies[itemProduction[items[i]]];
+                boolean rest = true;
+
+                Arrays.fill(first, 0);
+
+                for (int j = itemDot[items[i]] + 1; j < body.length && rest; j++) {
+                    if (body[j] < TERMINALS) {
+                        Bitsets.add(first, body[j]);
+                        rest = false;
+                    } else {
+                        Bitsets.addAll(first, firsts[body[j] - TERMINALS], Terminal.EPSILON.ordinal());
+                        rest = nullable[body[j] - TERMINALS];
+                    }
+                }
+
+                if (rest) Bitsets.addAll(first, sets[i], -1);
+
+                int rule = symbol - TERMINALS;
+
+                for (int j = index[rule]; j < index[rule] + productions[rule].length; j++) {
+                    if (Bitsets.addAll(sets[j], first, -1)) {
+                        dirty[j] = true;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        return new Closure(items, sets);
+    }
+
+    /** The items of a closure along with their lookaheads. */
+    private static final class Closure {
+        /** The items. */
+        final int[] items;
+        /** The lookaheads of each item. */
+        final long[][] lookaheads;
+
+        /***/
+        Closure(int[] items, long[][] lookaheads) {
+            this.items = items;
+            this.lookaheads = lookaheads;
+        }
+    }
+
+    /** The kernel items of a state, to find the state by. */
+    private static final class Kernel {
+        /** The items, in order. */
+        final int[] items;
+        /** The hash of the items. */
+        final int hash;
+
+        /***/
+        Kernel(int[] items) {
+            this.items = items;
+            this.hash = Arrays.hashCode(items);
+        }
+
+        /***/
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        /***/
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Kernel && Arrays.equals(items, ((Kernel)other).items);
+        }
+    }
+}
@@ -23,6 +23,8 @@
  */
 package cherry.frontend.grammar;
 
+import cherry.frontend.lexer.LineMap;
+
 /**
  * The {@code Token} class is one that takes the a lexeme from a file, it's
  * position in that file, and the name of the file and turns it into a
@@ -42,32 +44,177 @@ package cherry.frontend.grammar;
 public final class Token {
     /** The type of terminal this {@code Token} represents. */
     public final Type type;
-    /** The lexeme that this {@code Token} is founded on. */
-    public final String value;
+    /**
+     * The lexeme that this {@code Token} is founded on. For most tokens this is
+     * a view of the source, which keeps the contents for it.
+     */
+    private final CharSequence text;
+    /** The lexeme as a {@code String}, made the first time it is asked for. */
+    private String value;
     /** The name of the file this {@code Token} was found in. */
     public final String filename;
+    /**
+     * The index of the first character of this {@code Token} in its source,
+     * {@code -1} if it was given its line and column instead.
+     */
+    public final int offset;
+    /** The lines of the source, to find the line and column from the offset. */
+    private final LineMap lines;
     /** The line of the file in which this {@code Token} was found in. */
-    public final int line;
+    private int line;
     /** The column in the line of which this {@code Token} was found in. */
-    public final int column;
+    private int column;
+    /**
+     * The id given to this identifier by the {@code IdentifierPool}, so that
+     * identifiers can be compared without comparing strings. {@code -1} for any
+     * {@code Token} that is not an identifier.
+     */
+    public final int symbolId;
+    /**
+     * The value of a number, worked out by the {@code Lexer}: the bits of a
+     * {@code double} for a decimal number and the number itself for any other.
+     * {@code 0} for any {@code Token} that is not a number.
+     */
+    private final long number;
     
     /**
      * Constructs a new {@code Token} with the given data.
      * 
      * @param type The type of the this {@code Token} is the name of the terminal
      *      that this {@code Token} represents.
-     * @param value The value of this {@code Token} is the lexeme or source
+     * @param text The text of this {@code Token} is the lexeme or source
      *      string that was collected from the input file.
      * @param filename This is the name of the file this {@code Token} came from.
      * @param line This is the line in the file this {@code Token} came from.
      * @param column This is the column in the line this {@code Token} came from.
      */
-    public Token(Type type, String value, String filename, int line, int column) {
+    public Token(Type type, CharSequence text, String filename, int line, int column) {
+        this(type, text, filename, line, column, -1);
+    }
+    
+    /**
+     * Constructs a new {@code Token} for an identifier that has been pooled.
+     * 
+     * @param type The type of the this {@code Token}.
+     * @param text The lexeme of this {@code Token}.
+     * @param filename This is the name of the file this {@code Token} came from.
+     * @param line This is the line in the file this {@code Token} came from.
+     * @param column This is the column in the line this {@code Token} came from.
+     * @param symbolId The id of the identifier in the {@code IdentifierPool}.
+     */
+    public Token(Type type, CharSequence text, String filename, int line, int column, int symbolId) {
         this.type = type;
-        this.value = value;
+        this.text = text;
         this.filename = filename;
+        this.offset = -1;
+        this.lines = null;
         this.line = line;
         this.column = column;
+        this.symbolId = symbolId;
+        this.number = 0;
+    }
+    
+    /**
+     * Constructs a new {@code Token} that only knows where it starts in its
+     * source. Its line and column are found in the lines of the source the
+     * first time they are asked for, as most tokens are never asked.
+     * 
+     * @param type The type of the this {@code Token}.
+     * @param text The lexeme of this {@code Token}.
+     * @param filename This is the name of the file this {@code Token} came from.
+     * @param lines The lines of the source this {@code Token} came from.
+     * @param offset The index of the first character of this {@code Token}.
+     * @param symbolId The id of the identifier in the {@code IdentifierPool},
+     *      {@code -1} if this {@code Token} is not an identifier.
+     */
+    public Token(Type type, CharSequence text, String filename, LineMap lines, int offset, int symbolId) {
+        this(type, text, filename, lines, offset, symbolId, 0);
+    }
+    
+    /**
+     * Constructs a new {@code Token} that only knows where it starts in its
+     * source, with the value of the number it stands for.
+     * 
+     * @param type The type of the this {@code Token}.
+     * @param text The lexeme of this {@code Token}.
+     * @param filename This is the name of the file this {@code Token} came from.
+     * @param lines The lines of the source this {@code Token} came from.
+     * @param offset The index of the first character of this {@code Token}.
+     * @param symbolId The id of the identifier in the {@code IdentifierPool},
+     *      {@code -1} if this {@code Token} is not an identifier.
+     * @param number The value of the number, the bits of a {@code double} for
+     *      a decimal number, {@code 0} if this {@code Token} is not a number.
+     */
+    public Token(Type type, CharSequence text, String filename, LineMap lines, int offset, int symbolId, long number) {
+        this.type = type;
+        this.text = text;
+        this.filename = filename;
+        this.offset = offset;
+        this.lines = lines;
+        this.symbolId = symbolId;
+        this.number = number;
+    }
+    
+    /**
+     * @return The line of the file in which this {@code Token} was found in.
+     */
+    public int line() {
+        if (line == 0 && lines != null) line = lines.line(offset);
+        
+        return line;
+    }
+    
+    /**
+     * Returns the column of this {@code Token}, which counts the characters of
+     * its line in the contents of the source the token keeps.
+     * 
+     * @return The column in the line of which this {@code Token} was found in.
+     */
+    public int column() {
+        if (column == 0 && lines != null) column = lines.column(offset);
+        
+        return column;
+    }
+    
+    /**
+     * Returns the lexeme without copying it. Keywords and symbols share the
+     * value of their {@code Type}, everything else is a view of the source.
+     * 
+     * @return The lexeme of this {@code Token}.
+     */
+    public CharSequence text() {
+        return text;
+    }
+    
+    /**
+     * Returns the lexeme as a {@code String}, copying it out of the source the
+     * first time it is asked for.
+     * 
+     * @return The lexeme of this {@code Token}.
+     */
+    public String value() {
+        if (value == null) value = text.toString();
+        
+        return value;
+    }
+    
+    /**
+     * Returns the value of an integer number. Hexadecimal, octal and binary
+     * numbers fill all 64 bits, so they may come out negative.
+     * 
+     * @return The value of this {@code Token}, {@code 0} if it is not an
+     *      integer number.
+     */
+    public long longValue() {
+        return type == Type.DEC ? 0 : number;
+    }
+    
+    /**
+     * @return The value of a decimal number, {@code 0} if this {@code Token}
+     *      is not one.
+     */
+    public double doubleValue() {
+        return type == Type.DEC ? Double.longBitsToDouble(number) : 0;
     }
     
     /**
@@ -77,6 +224,6 @@ public final class Token {
     @Override
     public String toString() {
         return "FILE: \"" + filename + "\" TYPE: \"" + type + "\" VALUE: \"" +
-                value + "\" AT: " + line + ":" + column;
+                value() + "\" AT: " + line() + ":" + column();
     }
 }
@@ -23,6 +23,7 @@
  */
 package cherry.frontend.grammar;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -153,13 +154,20 @@ public enum Type {
     /** Comma symbol. */ COM(","),
     /** Lambda arrow. */ LARR("~>");
 
-    /** A map that makes it easier to reference the types. */
-    private static final Map<String, Type> typeTable = new HashMap<>();
+    /**
+     * A map that makes it easier to reference the types. It is filled once when
+     * the class is initialized and never changed after.
+     */
+    private static final Map<String, Type> typeTable;
 
     /** Filling the Type Table before using the class. */
     static {
+        Map<String, Type> table = new HashMap<>();
+
         for (Type type : values())
-            typeTable.put(type.value, type);
+            table.put(type.value, type);
+
+        typeTable = Collections.unmodifiableMap(table);
     }
 
     /** The value of this {@code Type} */
@@ -183,15 +191,15 @@ public enum Type {
 
     /**
      * Allows the caller to get the {@code Type} that is represented by the string
-     * {@code lexeme} if it exists in this enum. It is synchronized because calls
-     * to {@code Map#get(K key)} is not thread safe. Since this is rather a quick
-     * operation, synchronizing it will have little effect on performance while
-     * making sure there are no conflicts.
+     * {@code lexeme} if it exists in this enum. The table is never written to
+     * after the class is initialized, so this is safe to call from any thread
+     * without locking. The {@code Lexer} matches keywords straight from its
+     * source instead, without making a {@code String} first.
      * 
      * @param lexeme The lexeme to get the {@code Type} for.
      * @return The {@code Type} that is represented by the lexeme, if it exists.
      */
-    public static synchronized Type get(String lexeme) {
+    public static Type get(String lexeme) {
         Type result = typeTable.get(lexeme);
         return result == null ? ID : result;
     }
@@ -206,7 +214,7 @@ public enum Type {
      * @param lexeme The lexeme to get the {@code Type} for.
      * @return The {@code Type} that is represented by the lexeme, if it exists.
      */
-    public static synchronized Type getSymbol(String lexeme) {
+    public static Type getSymbol(String lexeme) {
         Type result = get(lexeme);
         return result == ID ? UNDEF : result;
     }
@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.lexer;
+
+/**
+ * Classifies characters for the {@code Lexer}. Every ASCII character has its
+ * classes stored as bits in a 128 entry table so that a check is one array load
+ * and a mask; only code points outside of ASCII fall back to the general
+ * {@code Character} methods.
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+final class CharClass {
+    /** The character is a letter. */
+    static final byte LETTER = 1;
+    /** The character is a decimal digit. */
+    static final byte DIGIT = 2;
+    /** The character can be part of a word: a letter, a digit, or {@code _}. */
+    static final byte WORD = 4;
+    /** The character is a space, tab, or line break. */
+    static final byte SPACE = 8;
+    /** The character is a hexadecimal digit. */
+    static final byte HEX = 16;
+    /** The classes of every ASCII character. */
+    private static final byte[] TABLE = new byte[128];
+
+    /** Filling the class table before using the class. */
+    static {
+        for (char c = 0; c < TABLE.length; c++) {
+            byte classes = 0;
+
+            if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z') classes |= LETTER | WORD;
+            if (c >= '0' && c <= '9') classes |= DIGIT | WORD | HEX;
+            if (c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F') classes |= HEX;
+            if (c == '_') classes |= WORD;
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r') classes |= SPACE;
+
+            TABLE[c] = classes;
+        }
+    }
+
+    /** Not to be constructed. */
+    private CharClass() {}
+
+    /**
+     * @param c The code point to check.
+     * @param classes The classes to check for, any of which will do.
+     * @return Whether the ASCII character {@code c} is in any of the classes.
+     */
+    static boolean is(int c, byte classes) {
+        return c >= 0 && c < 128 && (TABLE[c] & classes) != 0;
+    }
+
+    /***/
+    static boolean isLetter(int c) {
+        return c < 128 ? (TABLE[c] & LETTER) != 0 : Character.isLetter(c);
+    }
+
+    /**
+     * Numbers are only ever written with the ASCII digits, since their values
+     * are worked out as {@code c - '0'}; other digits are left to words.
+     */
+    static boolean isDigit(int c) {
+        return is(c, DIGIT);
+    }
+
+    /***/
+    static boolean isWordPart(int c) {
+        return c < 128 ? (TABLE[c] & WORD) != 0 : Character.isLetterOrDigit(c);
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.lexer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Lexes a single large source on every core instead of one, by cutting it into
+ * chunks at line breaks and lexing the chunks at the same time on the common
+ * fork join pool.
+ *
+ * <p>
+ * Outside of string and character literals every line break ends a token, so
+ * a chunk can be lexed without knowing anything about the chunks before it,
+ * unless a literal from an earlier chunk runs into it. Each chunk is therefore
+ * lexed twice: once as if it started in normal code, and once as if it started
+ * inside a string literal, resuming after the first {@code "} it holds. Going
+ * through the chunks in order, the place the previous chunk really stopped at
+ * picks which of the two is right; if neither is, say for a character literal
+ * that runs past a line break, that chunk is lexed again from where the
+ * previous one stopped.
+ * </p>
+ *
+ * <p>
+ * The identifiers of a run are only pooled once the run has been picked, so
+ * the words of a run lexed from the wrong state never reach the
+ * {@code IdentifierPool}. The picked runs are pooled at the same time too.
+ * </p>
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+final class ChunkedLexer {
+    /** Sources of this size or larger are lexed in chunks. */
+    static final int THRESHOLD = 4 << 20;
+    /** The smallest size of a chunk. */
+    private static final int MIN_CHUNK = 1 << 20;
+
+    /** Not to be constructed. */
+    private ChunkedLexer() {}
+
+    /**
+     * Tells whether lexing the given source in chunks is worth it, which it is
+     * when the source is large and there is more than one core to lex on.
+     *
+     * @param source The source to lex.
+     * @return Whether the source should be lexed in chunks.
+     */
+    static boolean worthIt(Source source) {
+        return source.length() >= THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+    /**
+     * Lexes the whole source in as many chunks as there are cores to spare.
+     *
+     * @param source The source to lex.
+     * @param ownsSource Whether the buffer takes over the source.
+     * @return The tokens of the source, ending with the end of the stream.
+     * @throws Exception if a token could not be lexed.
+     */
+    static TokenBuffer tokenize(Source source, boolean ownsSource) throws Exception {
+        int chunks = Math.min(ForkJoinPool.getCommonPoolParallelism() * 2, source.length() / MIN_CHUNK);
+        return tokenize(source, ownsSource, Math.max(chunks, 1));
+    }
+
+    /**
+     * Lexes the whole source in about the given number of chunks.
+     *
+     * @param source The source to lex.
+     * @param ownsSource Whether the buffer takes over the source.
+     * @param chunks How many chunks to cut the source into.
+     * @return The tokens of the source, ending with the end of the stream.
+     * @throws Exception if a token could not be lexed.
+     */
+    static TokenBuffer tokenize(Source source, boolean ownsSource, int chunks) throws Exception {
+        int[] bounds = split(source, chunks);
+        int count = bounds.length - 1;
+        List<Callable<Run>> tasks = new ArrayList<>(count * 2);
+
+        for (int i = 0; i < count; i++) {
+            int from = bounds[i];
+            int to = i == count - 1 ? Integer.MAX_VALUE : bounds[i + 1];
+
+            tasks.add(() -> run(source, from, to));
+            tasks.add(() -> {
+                int end = Math.min(to, source.length());
+                int quote = source.find(from, end, '\"', '\"');
+                return quote == end ? null : run(source, quote + 1, to);
+            });
+        }
+
+        List<Future<Run>> runs = ForkJoinPool.commonPool().invokeAll(tasks);
+        List<Callable<Void>> pooling = new ArrayList<>(count);
+        Run[] chosen = new Run[count];
+        int exit = 0;
+
+        for (int i = 0; i < count; i++) {
+            Run normal = get(runs.get(i * 2));
+            Run inside = get(runs.get(i * 2 + 1));
+
+            if (normal.from == exit)
+                chosen[i] = normal;
+            else if (inside != null && inside.from == exit)
+                chosen[i] = inside;
+            else
+                chosen[i] = run(source, exit, i == count - 1 ? Integer.MAX_VALUE : bounds[i + 1]);
+
+            TokenBuffer tokens = chosen[i].tokens;
+
+            pooling.add(() -> {
+                tokens.intern();
+                return null;
+            });
+
+            exit = chosen[i].exit;
+        }
+
+        for (Future<Void> pooled : ForkJoinPool.commonPool().invokeAll(pooling)) get(pooled);
+
+        TokenBuffer result = new TokenBuffer(source, ownsSource);
+
+        for (Run run : chosen)
+            for (int t = 0; t < run.tokens.size(); t++)
+                result.add(run.tokens, t, 0);
+
+        return result;
+    }
+
+    /**
+     * Cuts the source into chunks of about the same size, each starting at the
+     * beginning of a line.
+     *
+     * @param source The source to cut.
+     * @param chunks How many chunks to cut the source into.
+     * @return The index each chunk starts at, followed by the length of the source.
+     */
+    private static int[] split(Source source, int chunks) {
+        int length = source.length();
+        int[] bounds = new int[chunks + 1];
+        int count = 1;
+
+        for (int i = 1; i < chunks; i++) {
+            int bound = source.findLineBreak(Math.max((int)((long)length * i / chunks), bounds[count - 1]));
+
+            // A carriage return and a line feed stay together.
+            if (bound < length && source.get(bound) == '\r' && bound + 1 < length && source.get(bound + 1) == '\n')
+                bound++;
+
+            if (bound + 1 >= length) break;
+
+            if (bound + 1 > bounds[count - 1]) bounds[count++] = bound + 1;
+        }
+
+        bounds[count] = length;
+
+        int[] result = new int[count + 1];
+        System.arraycopy(bounds, 0, result, 0, count + 1);
+        return result;
+    }
+
+    /**
+     * Lexes the tokens that start between two indexes of the source, leaving
+     * the identifiers out of the pool.
+     *
+     * @param source The source to lex.
+     * @param from Where to start lexing, which must be between two tokens.
+     * @param to Where the next chunk starts; tokens starting there or later
+     *      are left for it, only the end of the stream is kept in the last one.
+     * @return The tokens.
+     * @throws Exception if a token could not be lexed.
+     */
+    private static Run run(Source source, int from, int to) throws Exception {
+        TokenBuffer tokens = new TokenBuffer(source, false);
+
+        try (Lexer lexer = Lexer.acquire(source, false, from)) {
+            boolean more;
+
+            lexer.pooling(false);
+
+            do {
+                more = lexer.nextInto(tokens);
+
+                if (tokens.start(tokens.size() - 1) >= to) {
+                    tokens.truncate(tokens.size() - 1);
+                    break;
+                }
+            } while (more);
+        }
+
+        if (to == Integer.MAX_VALUE)
+            return new Run(from, source.length(), tokens);
+
+        int last = tokens.size() - 1;
+        int end = last < 0 ? from : tokens.start(last) + tokens.length(last);
+
+        // Whatever is left up to the next chunk is spaces and comments.
+        return new Run(from, Math.max(end, to), tokens);
+    }
+
+    /***/
+    private static <T> T get(Future<T> task) throws Exception {
+        try {
+            return task.get();
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof Exception ? (Exception)ex.getCause() : ex;
+        }
+    }
+
+    /**
+     * The tokens of one chunk lexed from one start state.
+     */
+    private static final class Run {
+        /** Where lexing started. */
+        final int from;
+        /** Where the next chunk has to start lexing. */
+        final int exit;
+        /** The tokens. */
+        final TokenBuffer tokens;
+
+        /***/
+        Run(int from, int exit, TokenBuffer tokens) {
+            this.from = from;
+            this.exit = exit;
+            this.tokens = tokens;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.lexer;
+
+import cherry.frontend.grammar.Type;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Splits a source into the spans an editor or the documentation colors, each
+ * with the {@code Category} it is colored as. Unlike lexing for the parser,
+ * nothing between tokens is left out: every comment and every stretch of space
+ * is a span of its own, so the spans cover the whole source end to end.
+ *
+ * <p>
+ * No {@code Token}, {@code String}, or error is made along the way. Spans are
+ * either handed to a {@code Sink} as they are found, or written into an
+ * {@code int[]} three at a time as their start, length, and the ordinal of
+ * their category.
+ * </p>
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+public final class Highlighter {
+    /** The categories of every token type, by ordinal. */
+    private static final Category[] CATEGORIES = new Category[Type.values().length];
+
+    /** Filling the categories of the token types. */
+    static {
+        for (Type type : Type.values()) {
+            Category category;
+
+            if (type == Type.ID)
+                category = Category.IDENTIFIER;
+            else if (type.ordinal() >= Type.REAL.ordinal() && type.ordinal() <= Type.SKINNY.ordinal())
+                category = Category.NUMBER;
+            else if (type == Type.STRL)
+                category = Category.STRING;
+            else if (type == Type.CHRL)
+                category = Category.CHARACTER;
+            else if (type == Type.UNDEF || type == Type.EOTS)
+                category = Category.ERROR;
+            else if (type.ordinal() < Type.ADD.ordinal())
+                category = Category.KEYWORD;
+            else
+                category = Category.SYMBOL;
+
+            CATEGORIES[type.ordinal()] = category;
+        }
+    }
+
+    /** Not to be constructed. */
+    private Highlighter() {}
+
+    /**
+     * Hands every span of a source to a sink, in order.
+     *
+     * @param source The source to highlight, which is left open.
+     * @param sink What to hand the spans to.
+     */
+    public static void highlight(Source source, Sink sink) {
+        try (Lexer lexer = Lexer.acquire(source, false, 0)) {
+            lexer.highlight(sink);
+        }
+    }
+
+    /**
+     * Hands every span of a file to a sink, in order.
+     *
+     * @param file The file to highlight.
+     * @param sink What to hand the spans to.
+     * @throws java.io.IOException if the file could not be loaded.
+     */
+    public static void highlight(File file, Sink sink) throws IOException {
+        try (Source source = Source.open(file)) {
+            highlight(source, sink);
+        }
+    }
+
+    /**
+     * Writes the spans of a source into an array, three ints to a span: its
+     * start, its length, and the ordinal of its {@code Category}. Only as many
+     * spans as fit are written, but all of them are counted, so an array that
+     * was too small can be made large enough and filled again.
+     *
+     * @param source The source to highlight, which is left open.
+     * @param spans The array to write the spans into.
+     * @return The number of spans in the source.
+     */
+    public static int highlight(Source source, int[] spans) {
+        int[] count = { 0 };
+
+        highlight(source, (start, length, category) -> {
+            int at = count[0]++ * 3;
+
+            if (at + 3 <= spans.length) {
+                spans[at] = start;
+                spans[at + 1] = length;
+                spans[at + 2] = category.ordinal();
+            }
+        });
+
+        return count[0];
+    }
+
+    /**
+     * @param type The type of a token.
+     * @return The category the token is colored as.
+     */
+    public static Category category(Type type) {
+        return CATEGORIES[type.ordinal()];
+    }
+
+    /**
+     * Hands the comments and space from one index up to another to a sink. The
+     * lexer only ever leaves those between two tokens, a comment running from
+     * its {@code #} to the end of its line.
+     *
+     * @param source The source the space is in.
+     * @param from The index of the first character after the last token.
+     * @param to The index of the first character of the next token.
+     * @param sink What to hand the spans to.
+     */
+    static void trivia(Source source, int from, int to, Sink sink) {
+        while (from < to) {
+            int end = from;
+            Category category;
+
+            if (source.get(from) == '#') {
+                end = Math.min(source.findLineBreak(from), to);
+                category = Category.COMMENT;
+            } else {
+                while (end < to && source.get(end) != '#') end++;
+                category = Category.SPACE;
+            }
+
+            sink.span(from, end - from, category);
+            from = end;
+        }
+    }
+
+    /**
+     * What a span is colored as.
+     */
+    public enum Category {
+        /** A keyword, including {@code null}, {@code true}, and {@code false}. */ KEYWORD,
+        /** An identifier. */ IDENTIFIER,
+        /** A number of any base or width. */ NUMBER,
+        /** A string literal. */ STRING,
+        /** A character literal. */ CHARACTER,
+        /** An operator or punctuation. */ SYMBOL,
+        /** A comment, from its {@code #} up to its line break. */ COMMENT,
+        /** Spaces, tabs, and line breaks. */ SPACE,
+        /** Anything the lexer would report a mistake for. */ ERROR
+    }
+
+    /**
+     * Takes the spans of a source as they are found.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        /**
+         * @param start The index of the first byte of the span.
+         * @param length The number of bytes in the span.
+         * @param category What the span is colored as.
+         */
+        void span(int start, int length, Category category);
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.lexer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of every identifier the {@code Lexer} has found, shared by every
+ * thread in the compiler. Each distinct identifier is given a dense {@code int}
+ * id and a single {@code String}, so that {@code System} is only ever stored
+ * once no matter how many files use it, and later phases can compare ids
+ * instead of strings.
+ *
+ * <p>
+ * Identifiers are looked up straight from the bytes of a {@code Source}. The
+ * pool is split into stripes by hash, each with its own lock, so threads only
+ * wait on one another when they look up identifiers that land in the same
+ * stripe. Ids can be turned back into names from any thread without locking.
+ * </p>
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+public final class IdentifierPool {
+    /** The number of stripes, a power of two. */
+    private static final int STRIPES = 32;
+    /** The number of names in each chunk of the name table, a power of two. */
+    private static final int CHUNK = 4096;
+    /** The most chunks the name table can have. */
+    private static final int MAX_CHUNKS = 1 << 16;
+    /** The stripes of the pool. */
+    private static final Stripe[] STRIPE = new Stripe[STRIPES];
+    /** The names of the identifiers by id, in chunks so it never has to be copied. */
+    private static final AtomicReferenceArray<AtomicReferenceArray<String>> NAMES =
+            new AtomicReferenceArray<>(MAX_CHUNKS);
+    /** The next id to give out. */
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+    /** The number of lookups. */
+    private static final LongAdder LOOKUPS = new LongAdder();
+    /** The number of lookups that found the identifier already in the pool. */
+    private static final LongAdder HITS = new LongAdder();
+    /** The number of bytes held by the names in the pool. */
+    private static final LongAdder BYTES = new LongAdder();
+
+    /** Creating the stripes before using the class. */
+    static {
+        for (int i = 0; i < STRIPES; i++)
+            STRIPE[i] = new Stripe();
+    }
+
+    /** Not to be constructed. */
+    private IdentifierPool() {}
+
+    /**
+     * Finds the id of the identifier in the given window of a source, adding it
+     * to the pool if it is not there yet.
+     *
+     * @param source The source the identifier is in.
+     * @param start The index of the first character of the identifier.
+     * @param length The number of characters in the identifier.
+     * @return The id of the identifier.
+     */
+    public static int intern(Source source, int start, int length) {
+        int hash = 0x811C9DC5;
+
+        for (int i = 0; i < length; i++)
+            hash = (hash ^ source.get(start + i)) * 0x01000193;
+
+        LOOKUPS.increment();
+
+        return STRIPE[(hash ^ (hash >>> 16)) & (STRIPES - 1)].intern(source, start, length, hash);
+    }
+
+    /**
+     * @param id The id of an identifier.
+     * @return The name of the identifier.
+     */
+    public static String name(int id) {
+        return NAMES.get(id / CHUNK).get(id % CHUNK);
+    }
+
+    /**
+     * @return The number of distinct identifiers in the pool.
+     */
+    public static int size() {
+        return NEXT_ID.get();
+    }
+
+    /**
+     * @return The number of identifiers that have been looked up.
+     */
+    public static long lookups() {
+        return LOOKUPS.sum();
+    }
+
+    /**
+     * @return The number of lookups that found the identifier already pooled,
+     *      each of which is a {@code String} that did not have to be made.
+     */
+    public static long hits() {
+        return HITS.sum();
+    }
+
+    /**
+     * @return The number of characters held by all the names in the pool.
+     */
+    public static long characters() {
+        return BYTES.sum();
+    }
+
+    /** Gives the name the next id and stores it in the name table. */
+    private static int add(String name) {
+        int id = NEXT_ID.getAndIncrement();
+
+        if (id / CHUNK >= MAX_CHUNKS)
+            throw new IllegalStateException("Too many identifiers for the pool.");
+
+        AtomicReferenceArray<String> chunk = NAMES.get(id / CHUNK);
+
+        if (chunk == null) {
+            NAMES.compareAndSet(id / CHUNK, null, new AtomicReferenceArray<>(CHUNK));
+            chunk = NAMES.get(id / CHUNK);
+        }
+
+        chunk.set(id % CHUNK, name);
+        BYTES.add(name.length());
+
+        return id;
+    }
+
+    /**
+     * A single stripe of the pool, an open addressed hash table from the bytes
+     * of an identifier to its id.
+     */
+    private static final class Stripe {
+        /** The bytes of the identifier in each slot, {@code null} if empty. */
+        private byte[][] keys = new byte[64][];
+        /** The hash of the identifier in each slot. */
+        private int[] hashes = new int[64];
+        /** The id of the identifier in each slot. */
+        private int[] ids = new int[64];
+        /** The number of identifiers in this stripe. */
+        private int count = 0;
+
+        /** Finds or adds the identifier. */
+        synchronized int intern(Source source, int start, int length, int hash) {
+            int mask = keys.length - 1;
+            int slot = hash & mask;
+
+            for (byte[] key; (key = keys[slot]) != null; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash && matches(key, source, start, length)) {
+                    HITS.increment();
+                    return ids[slot];
+                }
+            }
+
+            byte[] key = new byte[length];
+
+            for (int i = 0; i < length; i++)
+                key[i] = (byte)source.get(start + i);
+
+            int id = add(source.text(start, length));
+
+            keys[slot] = key;
+            hashes[slot] = hash;
+            ids[slot] = id;
+
+            if (++count * 2 > keys.length) grow();
+
+            return id;
+        }
+
+        /** Doubles the number of slots in this stripe. */
+        private void grow() {
+            byte[][] oldKeys = keys;
+            int[] oldHashes = hashes;
+            int[] oldIds = ids;
+            int mask = oldKeys.length * 2 - 1;
+
+            keys = new byte[oldKeys.length * 2][];
+            hashes = new int[oldKeys.length * 2];
+            ids = new int[oldKeys.length * 2];
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == null) continue;
+
+                int slot = oldHashes[i] & mask;
+
+                while (keys[slot] != null) slot = (slot + 1) & mask;
+
+                keys[slot] = oldKeys[i];
+                hashes[slot] = oldHashes[i];
+                ids[slot] = oldIds[i];
+            }
+        }
+
+        /** Compares a key to a window of a source. */
+        private static boolean matches(byte[] key, Source source, int start, int length) {
+            if (key.length != length) return false;
+
+            for (int i = 0; i < length; i++)
+                if (key[i] != (byte)source.get(start + i)) return false;
+
+            return true;
+        }
+    }
+}
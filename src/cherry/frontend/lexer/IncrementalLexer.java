@@ -0,0 +1,117 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.lexer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Re-lexes a source after an edit without lexing the whole of it again, which
+ * is what an editor needs when it lexes on every keystroke.
+ *
+ * <p>
+ * Lexing restarts at the end of the last token that the edit cannot have
+ * changed. Every token is lexed from the same state, so as soon as a newly
+ * lexed token starts past the edit at the same place as one of the old tokens,
+ * every old token from there on is known to be the same, only moved by the
+ * size of the edit. The buffer is edited in place: the tokens lexed again take
+ * the place of the ones they replace, and the tokens after them are moved
+ * along, as are the bytes after the edit in the source. Nothing before the
+ * edit is touched, so an edit costs about as much as the few tokens around it
+ * and the moving of what comes after.
+ * </p>
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+public final class IncrementalLexer {
+    /** Not to be constructed. */
+    private IncrementalLexer() {}
+
+    /**
+     * Applies an edit to the source of a {@code TokenBuffer} and to its tokens,
+     * in place. The buffer reads from the edited source afterwards, and any
+     * {@code Token} made from it before the edit must not be read again.
+     *
+     * @param tokens The tokens of the source before the edit, which become
+     *      the tokens of the source after it.
+     * @param offset The index in the source where the edit starts.
+     * @param removed The number of characters the edit removes.
+     * @param inserted The text the edit puts in their place.
+     * @return The same buffer, now holding the tokens of the edited source.
+     * @throws Exception if a token could not be lexed.
+     * @throws java.lang.IndexOutOfBoundsException if the edit is not inside
+     *      the source.
+     */
+    public static TokenBuffer relex(TokenBuffer tokens, int offset, int removed, String inserted) throws Exception {
+        Source old = tokens.source();
+
+        if (offset < 0 || removed < 0 || offset + removed > old.length())
+            throw new IndexOutOfBoundsException("Edit: " + offset + "+" + removed + " of " + old.length());
+
+        byte[] insert = inserted.getBytes(StandardCharsets.UTF_8);
+        int shift = insert.length - removed;
+
+        // A token can look ahead at characters past its end, so the last token
+        // kept is one whose look ahead cannot have reached the edit.
+        int keep = tokens.lastBefore(offset - SymbolAutomaton.LONGEST);
+        int restart = keep < 0 ? 0 : tokens.start(keep) + tokens.length(keep);
+
+        Source source = old.edit(offset, removed, insert);
+        TokenBuffer lexed = new TokenBuffer(source, false, 16);
+
+        // The first old token that could still be the same after the edit,
+        // and the first one that is, which is the end of the stream until the
+        // two streams are found to be back in step.
+        int candidate = keep + 1;
+        int same = tokens.size();
+        int damageEnd = offset + insert.length;
+
+        try (Lexer lexer = Lexer.acquire(source, false, restart)) {
+            while (lexer.nextInto(lexed)) {
+                int last = lexed.size() - 1;
+                int start = lexed.start(last);
+
+                if (start < damageEnd) continue;
+
+                // Move past old tokens that start before this one did.
+                while (candidate < tokens.size() - 1 && tokens.start(candidate) + shift < start)
+                    candidate++;
+
+                if (candidate < tokens.size() - 1
+                        && tokens.start(candidate) + shift == start
+                        && tokens.type(candidate) == lexed.type(last)
+                        && tokens.length(candidate) == lexed.length(last)) {
+                    // The streams are back in step, the rest is the same but moved.
+                    lexed.truncate(last);
+                    same = candidate;
+                    break;
+                }
+            }
+        }
+
+        tokens.splice(keep + 1, same, lexed, shift, source);
+
+        return tokens;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.lexer;
+
+import cherry.frontend.grammar.Type;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Recognizes the words of {@code Type}, such as {@code if} or {@code namespace},
+ * straight from the bytes of a {@code Source}, so no {@code String} has to be
+ * made just to find out whether a word is a keyword.
+ *
+ * <p>
+ * The words are placed in a perfect hash table when this class is first used:
+ * a seed is searched for that gives every word its own slot, so a lookup is one
+ * hash of the characters of the word, followed by a single compare. Words longer
+ * than every keyword are never hashed at all.
+ * The table is never changed after that, so it can be read from any number of
+ * threads without locking.
+ * </p>
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+final class KeywordTable {
+    /**
+     * The types that stand for a whole class of lexemes rather than a single
+     * word, their values are only names and are never keywords.
+     */
+    private static final Set<Type> CLASSES = EnumSet.of(
+        Type.ID, Type.REAL, Type.HEX, Type.OCT, Type.BIN, Type.DEC, Type.WIDE,
+        Type.SKINNY, Type.STRL, Type.CHRL, Type.UNDEF, Type.EOTS
+    );
+    /** The words in their slots, {@code null} for an empty slot. */
+    private static final byte[][] WORDS;
+    /** The {@code Type} of the word in each slot. */
+    private static final Type[] TYPES;
+    /** The seed that makes the hash perfect for the words. */
+    private static final int SEED;
+    /** Masks a hash down to a slot. */
+    private static final int MASK;
+    /** The length of the longest word. */
+    private static final int LONGEST;
+    /** The most slots searched for a perfect hash before giving up. */
+    private static final int MAX_SIZE = 1 << 12;
+
+    /** Building the table from the words in {@code Type}. */
+    static {
+        List<Type> types = new ArrayList<>();
+
+        for (Type type : Type.values())
+            if (!CLASSES.contains(type) && isWord(type.toString())) types.add(type);
+
+        byte[][] words = new byte[types.size()][];
+        int longest = 0;
+
+        for (int i = 0; i < words.length; i++) {
+            words[i] = bytes(types.get(i).toString());
+            longest = Math.max(longest, words[i].length);
+        }
+
+        // Start at twice the number of words and keep doubling until a seed
+        // is found that gives every word a slot of its own.
+        int size = Integer.highestOneBit(Math.max(words.length, 1) * 2 - 1) << 1;
+        int seed = 0;
+
+        search:
+        for (; size <= MAX_SIZE; size <<= 1)
+            for (seed = 1; seed < 1 << 16; seed++)
+                if (isPerfect(words, seed, size - 1)) break search;
+
+        if (size > MAX_SIZE)
+            throw new IllegalStateException("No perfect hash for the " + words.length + " keywords of Type "
+                    + types + " within " + MAX_SIZE + " slots.");
+
+        SEED = seed;
+        LONGEST = longest;
+        MASK = size - 1;
+        WORDS = new byte[size][];
+        TYPES = new Type[size];
+
+        for (int i = 0; i < words.length; i++) {
+            int slot = hash(words[i], 0, words[i].length, SEED) & MASK;
+
+            WORDS[slot] = words[i];
+            TYPES[slot] = types.get(i);
+        }
+    }
+
+    /** Not to be constructed. */
+    private KeywordTable() {}
+
+    /**
+     * Finds the {@code Type} of the word in the given window of the source.
+     *
+     * @param source The source the word is in.
+     * @param start The index of the first character of the word.
+     * @param length The number of characters in the word.
+     * @return The {@code Type} of the word, or {@code Type.ID} if it is not
+     *      one of the words of {@code Type}.
+     */
+    static Type match(Source source, int start, int length) {
+        if (length > LONGEST) return Type.ID;
+
+        int slot = hash(source, start, length, SEED) & MASK;
+        byte[] word = WORDS[slot];
+
+        if (word == null || word.length != length) return Type.ID;
+
+        for (int i = 0; i < length; i++)
+            if (word[i] != (byte)source.get(start + i)) return Type.ID;
+
+        return TYPES[slot];
+    }
+
+    /**
+     * Hashes the length and every character of a word, so that any two words
+     * can be told apart by some seed.
+     */
+    private static int hash(byte[] word, int start, int length, int seed) {
+        int h = seed * 31 + length;
+
+        for (int i = start; i < start + length; i++) h = h * 31 + word[i];
+
+        return h ^ (h >>> 7) ^ (h >>> 15);
+    }
+
+    /** Hashes a word of the source exactly as its bytes would be hashed. */
+    private static int hash(Source source, int start, int length, int seed) {
+        int h = seed * 31 + length;
+
+        for (int i = start; i < start + length; i++) h = h * 31 + (byte)source.get(i);
+
+        return h ^ (h >>> 7) ^ (h >>> 15);
+    }
+
+    /** Checks whether the seed gives every word its own slot. */
+    private static boolean isPerfect(byte[][] words, int seed, int mask) {
+        boolean[] taken = new boolean[mask + 1];
+
+        for (byte[] word : words) {
+            int slot = hash(word, 0, word.length, seed) & mask;
+
+            if (taken[slot]) return false;
+
+            taken[slot] = true;
+        }
+
+        return true;
+    }
+
+    /** Words are the values of {@code Type} written with ASCII letters alone. */
+    private static boolean isWord(String value) {
+        if (value.isEmpty()) return false;
+
+        for (int i = 0; i < value.length(); i++)
+            if (!CharClass.isLetter(value.charAt(i)) || value.charAt(i) >= 128) return false;
+
+        return true;
+    }
+
+    /** The ASCII bytes of a word. */
+    private static byte[] bytes(String word) {
+        byte[] result = new byte[word.length()];
+
+        for (int i = 0; i < result.length; i++)
+            result[i] = (byte)word.charAt(i);
+
+        return result;
+    }
+}
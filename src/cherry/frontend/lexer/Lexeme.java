@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.lexer;
+
+/**
+ * A view of a window of a {@code Source} as a {@code CharSequence}, so the text
+ * of a token can be handed around without copying it. A {@code String} is only
+ * made when {@code toString()} is called. The view keeps the contents of its
+ * {@code Source}, so it stays good after that is closed. Every byte is taken
+ * to be a character, so the window must be ASCII.
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+final class Lexeme implements CharSequence {
+    /** The source the text is in. */
+    private final Source source;
+    /** The index of the first character of the text. */
+    private final int start;
+    /** The number of characters in the text. */
+    private final int length;
+
+    /**
+     * @param source The source the text is in.
+     * @param start The index of the first character of the text.
+     * @param length The number of characters in the text.
+     */
+    Lexeme(Source source, int start, int length) {
+        this.source = source;
+        this.start = start;
+        this.length = length;
+
+        source.keep();
+    }
+
+    /**
+     * Inherited method.
+     *
+     * @return The number of characters in the text.
+     * @see java.lang.CharSequence#length()
+     */
+    @Override
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Inherited method.
+     *
+     * @param index The index of the character in the text.
+     * @return The character at the index.
+     * @see java.lang.CharSequence#charAt(int)
+     */
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException("Index: " + index + " of " + length);
+
+        return (char)source.get(start + index);
+    }
+
+    /**
+     * Inherited method.
+     *
+     * @param from The index of the first character, inclusive.
+     * @param to The index of the last character, exclusive.
+     * @return A view of part of this text.
+     * @see java.lang.CharSequence#subSequence(int, int)
+     */
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        if (from < 0 || to > length || from > to)
+            throw new IndexOutOfBoundsException("Range: " + from + "-" + to + " of " + length);
+
+        return new Lexeme(source, start + from, to - from);
+    }
+
+    /**
+     * Inherited method.
+     *
+     * @return A copy of the text.
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return source.text(start, length);
+    }
+}
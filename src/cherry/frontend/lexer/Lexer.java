@@ -25,61 +25,224 @@ package cherry.frontend.lexer;
 
 import cherry.frontend.grammar.Token;
 import cherry.frontend.grammar.Type;
-import cherry.util.exception.TypeConflictException;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * /// Class Description ///
  *
+ * <p>
+ * A {@code Lexer} can be used for one source after another with
+ * {@code reset(Source)}, keeping everything it has allocated. Each thread
+ * keeps one for that, which {@code open(File)} hands out whenever it is not
+ * already lexing something, so a thread that lexes thousands of small files
+ * does not set up a lexer for every one of them.
+ * </p>
+ *
  * @author SoraKatadzuma
  * @version 0.0.0.2
  */
-public final class Lexer {
+public final class Lexer implements TokenStream, Closeable {
     /** We keep a simple reference to the beginning of any file for convenience. */
     private static final int ORIGIN = 0;
+    /** Stands in for a byte sequence that is not valid UTF-8. */
+    private static final int REPLACEMENT = 0xFFFD;
+    /** The number of tokens the stream can hold at once, a power of two. */
+    private static final int LOOKAHEAD = 64;
+    /** The powers of ten that a {@code double} holds exactly. */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    /** The lexer each thread keeps to lex with. */
+    private static final ThreadLocal<Lexer> POOL = new ThreadLocal<>();
+    /** Where each thread decodes the escapes of a literal. */
+    private static final ThreadLocal<StringBuilder> ESCAPES = ThreadLocal.withInitial(StringBuilder::new);
     /** The name of the file we are reading. */
-    private final String filename;
-    /** The line we are currently at in a given file. */
-    private int line = 1;
-    /** The column we are currently at in a given file. */
-    private int column = 0;
-    /** Shows the beginning of a token. */
-    private int beginning = 0;
+    private String filename;
     /** Denotes the end of the file. */
     private boolean EOF = false;
-    /** Denotes the end of a line. */
-    private boolean EOL = false;
-    /** A way for us to move around the file easier. */
-    private final FileChannel fchan;
-    /** The underlying reader. */
-    private final FileInputStream fis;
-    /** A way for us to build our strings. */
-    private final StringBuilder builder = new StringBuilder();
-    /** The currently being read character. */
-    private char current;
-    /** The lexeme we just recently found or put together. */
-    private String lexeme;
+    /** The contents of the file we are reading. */
+    private Source source;
+    /** Tells whether this lexer opened the source and must close it. */
+    private boolean ownsSource;
+    /** The index of the next character to read from the source. */
+    private int position = ORIGIN;
+    /** The currently being read character, as a code point. */
+    private int current;
+    /** The index the last character read started at. */
+    private int previous = ORIGIN;
+    /** The index of the first character of the lexeme we just found. */
+    private int tokenStart;
+    /**
+     * The value of the number we just found, the bits of a {@code double} for
+     * a decimal number.
+     */
+    private long number;
+    /** What is wrong with the lexeme we just found, {@code null} if nothing. */
+    private LexicalError.Code problem;
+    /** The mistakes found in the tokens handed out as a stream. */
+    private final List<LexicalError> errors = new ArrayList<>();
+    /** The tokens that have been lexed but not yet let go of. */
+    private final Token[] ring = new Token[LOOKAHEAD];
+    /** The number of tokens consumed by {@code next()}. */
+    private long head = 0;
+    /** The number of tokens that have been lexed. */
+    private long tail = 0;
+    /** Where the stream was marked, {@code -1} if it is not. */
+    private long marked = -1;
+    /** The end of the stream once it has been found. */
+    private Token end;
+    /** Tells whether a thread keeps this lexer to lex with. */
+    private boolean pooled = false;
+    /** Tells whether this lexer is in use, which a kept one is not once closed. */
+    private boolean busy = true;
+    /** Tells whether {@code nextInto} puts identifiers in the {@code IdentifierPool}. */
+    private boolean pooling = true;
+
+    /**
+     * @param file The file that this lexer will scan.
+     * @throws java.io.IOException if the file could not be loaded.
+     */
+    public Lexer(File file) throws IOException {
+        this(Source.open(file), true);
+    }
+
+    /**
+     * @param source The source that this lexer will scan, it is left open once
+     *      lexing has finished.
+     */
+    public Lexer(Source source) {
+        this(source, false);
+    }
+
+    /**
+     * @param source The source that this lexer will scan.
+     * @param ownsSource Whether this lexer must close the source when done.
+     */
+    Lexer(Source source, boolean ownsSource) {
+        this.source = source;
+        this.ownsSource = ownsSource;
+        filename = source.filename;
+    }
+
+    /**
+     * Hands out the lexer this thread keeps, reset to lex the given file, or a
+     * new one if the kept one is in use. The lexer goes back to the thread
+     * once it is closed, and must not be used after that.
+     *
+     * @param file The file that the lexer will scan.
+     * @return A lexer for the file.
+     * @throws java.io.IOException if the file could not be loaded.
+     */
+    public static Lexer open(File file) throws IOException {
+        return acquire(Source.open(file), true, ORIGIN);
+    }
 
+    /**
+     * The same as {@code open(File)}, for a source that is already open.
+     *
+     * @param source The source that the lexer will scan.
+     * @param ownsSource Whether the lexer must close the source when done.
+     * @param position The index of the character to start from, which must be
+     *      somewhere a lexer could have stopped between two tokens.
+     * @return A lexer for the source.
+     */
+    static Lexer acquire(Source source, boolean ownsSource, int position) {
+        Lexer lexer = POOL.get();
+
+        if (lexer == null || lexer.busy) {
+            lexer = new Lexer(source, ownsSource);
+            lexer.position = position;
+
+            if (POOL.get() == null) {
+                lexer.pooled = true;
+                POOL.set(lexer);
+            }
+
+            return lexer;
+        }
+
+        lexer.reset(source, ownsSource, position);
+        lexer.busy = true;
+
+        return lexer;
+    }
 
     /**
+     * Readies this lexer to scan another source from its beginning, keeping
+     * everything it has allocated. The source it was scanning is closed if
+     * this lexer opened it, and its tokens must not be read after this unless
+     * they were already copied.
+     *
+     * @param source The source that this lexer will scan, it is left open once
+     *      lexing has finished.
+     */
+    public void reset(Source source) {
+        reset(source, false, ORIGIN);
+    }
+
+    /**
+     * Readies this lexer to scan another file from its beginning, as with
+     * {@code reset(Source)}.
+     *
      * @param file The file that this lexer will scan.
-     * @throws java.io.FileNotFoundException
+     * @throws java.io.IOException if the file could not be loaded.
      */
-    public Lexer(File file) throws FileNotFoundException {
-        fis = new FileInputStream(file);
-        fchan = fis.getChannel();
-        filename = file.getName();
+    public void reset(File file) throws IOException {
+        reset(Source.open(file), true, ORIGIN);
+    }
+
+    /**
+     * Forgets everything about the current source and starts on another.
+     *
+     * @param source The source that this lexer will scan.
+     * @param ownsSource Whether this lexer must close the source when done.
+     * @param position The index of the character to start from.
+     */
+    private void reset(Source source, boolean ownsSource, int position) {
+        if (this.ownsSource && this.source != source) this.source.close();
+
+        this.source = source;
+        this.ownsSource = ownsSource;
+        this.position = position;
+        filename = source.filename;
+        EOF = false;
+        current = 0;
+        previous = position;
+        tokenStart = position;
+        problem = null;
+        errors.clear();
+        Arrays.fill(ring, null);
+        head = 0;
+        tail = 0;
+        marked = -1;
+        end = null;
+        pooling = true;
+    }
+
+    /**
+     * Sets whether {@code nextInto} puts the identifiers it finds in the
+     * {@code IdentifierPool}. Identifiers left out have no id until
+     * {@code TokenBuffer.intern()} is called; until then their text is read
+     * back from the source. This lasts until the lexer is reset.
+     *
+     * @param pooling Whether identifiers are pooled.
+     */
+    void pooling(boolean pooling) {
+        this.pooling = pooling;
     }
 
     /**
      * Responsible for finding and collecting the tokens of a source file and
-     * returning them to the parser for parsing.
+     * returning them to the parser for parsing. This drains the stream, which
+     * is convenient when every token is needed at once. If this lexer opened
+     * the source, it is closed, which the tokens outlive.
      *
      * @return The list of tokens found from the source code of the file.
      * @throws java.io.IOException
@@ -87,78 +250,208 @@ public final class Lexer {
     public List<Token> lex() throws Exception {
         // Our tokens to return
         List<Token> tokens = new ArrayList<>();
-        // A holder to check our token for null
+        // A holder to check our token for the end of the stream
         Token token;
 
-        // While the end of the file has not been found.
-        while (!EOF) {
-            // Assign the next token and check it.
-            token = nextToken();
+        do {
+            token = next();
+            tokens.add(token);
+        } while (token.type != Type.EOTS);
+
+        if (ownsSource) close();
 
-            // If that token is not null add it to the tokens we have found.
-            if (token != null) tokens.add(token);
+        return tokens;
+    }
+
+    /**
+     * Inherited from {@code TokenStream}.
+     *
+     * @return The next token.
+     * @throws Exception if the next token could not be lexed.
+     */
+    @Override
+    public Token next() throws Exception {
+        Token token = peek(0);
+
+        // The end of the stream is never consumed.
+        if (token != end) head++;
+
+        return token;
+    }
+
+    /**
+     * Inherited from {@code TokenStream}.
+     *
+     * @param k How far to look ahead.
+     * @return The token {@code k} places ahead.
+     * @throws Exception if the token could not be lexed.
+     */
+    @Override
+    public Token peek(int k) throws Exception {
+        long wanted = head + k;
+
+        while (tail <= wanted) {
+            // Past the end of the stream there is only the end of the stream.
+            if (end != null) return end;
+
+            // Tokens from the mark, or from the head if there is none, are kept.
+            if (tail - (marked < 0 ? head : marked) >= LOOKAHEAD)
+                throw new IllegalStateException("Cannot look ahead more than " + LOOKAHEAD + " tokens.");
+
+            ring[(int)(tail++ & (LOOKAHEAD - 1))] = nextToken();
         }
 
-        // This means we hit the end of the file so add in a token saying we have.
-        // This will help the parser know what is the end of the stream and how
-        // to determine the end of parsing.
-        tokens.add(new Token(Type.EOTS, "$", filename, line, beginning));
+        return ring[(int)(wanted & (LOOKAHEAD - 1))];
+    }
 
-        return tokens;
+    /**
+     * Inherited from {@code TokenStream}.
+     */
+    @Override
+    public void mark() {
+        marked = head;
+    }
+
+    /**
+     * Inherited from {@code TokenStream}.
+     */
+    @Override
+    public void reset() {
+        if (marked < 0) throw new IllegalStateException("The stream has not been marked.");
+
+        head = marked;
+        marked = -1;
+    }
+
+    /**
+     * Inherited from {@code TokenStream}.
+     */
+    @Override
+    public void release() {
+        marked = -1;
     }
 
     /**
-     * Uses the FileInputStream to read a character from the source and then
-     * returns it, whilst also incrementing where the reader is.
+     * Closes the source if this lexer opened it. The tokens handed out keep
+     * the contents of the source, which is then not pooled, so their text and
+     * positions stay good after this. A lexer kept by its thread goes back to
+     * it, to be handed out by {@code open(File)} again.
+     */
+    @Override
+    public void close() {
+        if (ownsSource) source.close();
+
+        ownsSource = false;
+
+        if (pooled) busy = false;
+    }
+
+    /**
+     * Returns the mistakes found in the tokens this lexer has handed out as a
+     * stream so far, each of which was handed out as a {@code Type.UNDEF}
+     * token. A {@code TokenBuffer} keeps its own.
      *
-     * @return A character formated integer returned by FileInputStream#read().
-     * @throws java.io.IOException
+     * @return The mistakes, in the order they were found.
      */
-    private char read() throws IOException {
-        // Increment the column.
-        column++;
-        // Return the result of FileInputStream#read().
-        return (char)fis.read();
+    public List<LexicalError> errors() {
+        return Collections.unmodifiableList(errors);
     }
 
     /**
-     * Skips an entire line.
+     * Reads a character from the source and then returns it, whilst also
+     * incrementing where the reader is. The source is UTF-8, an ASCII character
+     * is returned as it is and only a byte with its high bit set goes through
+     * {@code decode(int)}.
      *
-     * @throws java.io.IOException
+     * @return The code point read, or {@code 0xFFFF} past the end of the source.
      */
-    private void skipLine() throws IOException {
-        while (!EOL && !EOF) {
-            // read each character.
-            current = read();
+    private int read() {
+        previous = position;
+
+        // Past the end of the source we keep moving so that seeking back works.
+        if (position >= source.length()) {
+            position++;
+            return 0xFFFF;
+        }
+
+        int lead = source.get(position++);
+
+        return lead < 0x80 ? lead : decode(lead);
+    }
+
+    /**
+     * Decodes the rest of a UTF-8 sequence whose first byte has just been read,
+     * moving past it. A sequence that is cut short, too long, or otherwise not
+     * valid UTF-8 becomes a single {@code REPLACEMENT} for its first byte.
+     *
+     * @param lead The first byte of the sequence.
+     * @return The code point of the sequence.
+     */
+    private int decode(int lead) {
+        int count, codePoint, smallest;
+
+        if (lead >= 0xC2 && lead <= 0xDF) {
+            count = 1; codePoint = lead & 0x1F; smallest = 0x80;
+        } else if (lead >= 0xE0 && lead <= 0xEF) {
+            count = 2; codePoint = lead & 0x0F; smallest = 0x800;
+        } else if (lead >= 0xF0 && lead <= 0xF4) {
+            count = 3; codePoint = lead & 0x07; smallest = 0x10000;
+        } else {
+            return REPLACEMENT;
+        }
 
-            // should catch the newlines and set the EOL flag if necessary.
-            if (isSpace(current)) skipSpace();
+        if (position + count > source.length()) return REPLACEMENT;
 
-            if (current == 0xFFFF) EOF = true;
+        for (int i = 0; i < count; i++) {
+            int next = source.get(position + i);
+
+            if ((next & 0xC0) != 0x80) return REPLACEMENT;
+
+            codePoint = codePoint << 6 | next & 0x3F;
         }
 
-        // EOL was set so turn it off
-        if (EOL == true) EOL = !EOL;
+        // Overlong forms, surrogates, past the last code point, and the value
+        // we use for the end of the source.
+        if (codePoint < smallest || codePoint > Character.MAX_CODE_POINT || codePoint == 0xFFFF ||
+                codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)
+            return REPLACEMENT;
+
+        position += count;
+        return codePoint;
+    }
+
+    /**
+     * Skips an entire line.
+     */
+    private void skipLine() {
+        // Jump straight to the line break, or the end of the source.
+        int from = Math.min(position, source.length());
+        int stop = source.findLineBreak(from);
+
+        position = Math.max(position, stop);
+
+        current = read();
+
+        // should catch the newlines.
+        if (isSpace(current)) skipSpace();
+
+        if (current == 0xFFFF) EOF = true;
     }
 
     /**
      * Skips spaces and continues for as long as there is space.
-     *
-     * @throws java.io.IOException
      */
-    private void skipSpace() throws IOException {
+    private void skipSpace() {
         while (true) {
             switch (current) {
                 case ' ':
                 case '\t':
+                    skipTo(source.skipBlanks(Math.min(position, source.length())));
                     current = read();
                     continue;
                 case '\n':
                 case '\r':
                     current = read();
-                    line++;
-                    column = 1;
-                    EOL = true;
                     continue;
             }
 
@@ -167,25 +460,255 @@ public final class Lexer {
     }
 
     /**
-     * Returns the next Token in the source code.
+     * Returns the next Token in the source code, which is the end of the stream
+     * once the end of the file has been found.
      *
      * @return The next source code token.
-     * @throws Exception
      */
-    private Token nextToken() throws Exception {
-        return nextLexeme();
+    private Token nextToken() {
+        // A holder to check our type for null
+        Type type;
+
+        // While the end of the file has not been found.
+        while (!EOF) {
+            // Find the next lexeme and check it.
+            type = nextLexeme();
+
+            // Identifiers are pooled, so each one only has a single string.
+            if (type == Type.ID) {
+                int id = IdentifierPool.intern(source, tokenStart, position - tokenStart);
+                return new Token(type, IdentifierPool.name(id), filename, source.share(), tokenStart, id);
+            }
+
+            // Mistakes are written down and handed out as undefined tokens.
+            if (problem != null)
+                errors.add(new LexicalError(problem, filename, source.share(), tokenStart, position - tokenStart));
+
+            // If that lexeme is not null it is the next token.
+            if (type != null)
+                return new Token(type, text(source, type, tokenStart, position - tokenStart),
+                                 filename, source.share(), tokenStart, -1, number);
+        }
+
+        // This means we hit the end of the file so add in a token saying we have.
+        // This will help the parser know what is the end of the stream and how
+        // to determine the end of parsing.
+        end = new Token(Type.EOTS, "$", filename, source.share(), source.length(), -1);
+
+        return end;
+    }
+
+    /**
+     * Lexes the whole source straight into a {@code TokenBuffer}, without making
+     * a {@code Token} or a {@code String} for any of it. If this lexer opened
+     * the source, the buffer takes it over and closes it. Sources of at least
+     * {@code ChunkedLexer.THRESHOLD} bytes are lexed in parallel chunks.
+     *
+     * @return The tokens of the source, ending with the end of the stream.
+     * @throws Exception if a token could not be lexed.
+     * @throws java.lang.IllegalStateException if tokens were already taken from
+     *      this lexer as a stream.
+     */
+    public TokenBuffer tokenize() throws Exception {
+        if (tail != 0)
+            throw new IllegalStateException("Tokens were already streamed from this lexer.");
+
+        boolean handOver = ownsSource;
+
+        // The buffer reads the text of its tokens from the source.
+        ownsSource = false;
+
+        // A large source is lexed on every core.
+        if (position == ORIGIN && ChunkedLexer.worthIt(source))
+            return ChunkedLexer.tokenize(source, handOver);
+
+        TokenBuffer buffer = new TokenBuffer(source, handOver);
+
+        while (nextInto(buffer));
+
+        return buffer;
+    }
+
+    /**
+     * Lexes the next token into a {@code TokenBuffer}, which is the end of the
+     * stream once the end of the file has been found.
+     *
+     * @param buffer The buffer to add the token to.
+     * @return Whether there was a token before the end of the stream.
+     */
+    boolean nextInto(TokenBuffer buffer) {
+        // A holder to check our type for null
+        Type type;
+
+        while (!EOF) {
+            type = nextLexeme();
+
+            if (type == Type.ID) {
+                buffer.add(type, tokenStart, position - tokenStart,
+                           pooling ? IdentifierPool.intern(source, tokenStart, position - tokenStart) : -1, 0);
+                return true;
+            }
+
+            // The buffer keeps the code of a mistake with its undefined token.
+            if (type != null) {
+                buffer.add(type, tokenStart, position - tokenStart, problem == null ? -1 : problem.ordinal(), number);
+                return true;
+            }
+        }
+
+        buffer.add(Type.EOTS, source.length(), 0, -1, 0);
+
+        return false;
+    }
+
+    /**
+     * Lexes the rest of the source for highlighting, handing every token to the
+     * sink along with the comments and space before it. Nothing is allocated
+     * for a token, identifiers are not pooled, and mistakes are not written
+     * down: an undefined token is all a highlighter needs to know of them.
+     *
+     * @param sink What to hand the spans to.
+     */
+    void highlight(Highlighter.Sink sink) {
+        int gap = Math.min(position, source.length());
+        Type type;
+
+        while (!EOF) {
+            type = nextLexeme();
+
+            if (type != null) {
+                Highlighter.trivia(source, gap, tokenStart, sink);
+                sink.span(tokenStart, position - tokenStart,
+                          problem == null ? Highlighter.category(type) : Highlighter.Category.ERROR);
+                gap = position;
+            }
+        }
+
+        Highlighter.trivia(source, gap, source.length(), sink);
+    }
+
+    /**
+     * Creates the lexeme of a token from its window in the source. Keywords and
+     * symbols are always written the same way, so their lexeme is the value of
+     * their {@code Type}; string and character literals leave out their quotes.
+     *
+     * @param source The source the token was found in.
+     * @param type The type of the token.
+     * @param start The index of the first character of the token.
+     * @param length The number of characters in the token.
+     * @return The lexeme of the token.
+     */
+    static String lexeme(Source source, Type type, int start, int length) {
+        return text(source, type, start, length).toString();
+    }
+
+    /**
+     * The same as {@code lexeme(Source, Type, int, int)}, except that the text
+     * is only a view of the source instead of a copy, unless it has to be
+     * decoded or is a literal with escapes in it.
+     *
+     * @param source The source the token was found in.
+     * @param type The type of the token.
+     * @param start The index of the first character of the token.
+     * @param length The number of characters in the token.
+     * @return The text of the token.
+     */
+    static CharSequence text(Source source, Type type, int start, int length) {
+        switch (type) {
+            case ID:
+            case REAL:
+            case HEX:
+            case OCT:
+            case BIN:
+            case DEC:
+            case WIDE:
+            case SKINNY:
+            case UNDEF:
+                return window(source, start, length);
+            case STRL:
+            case CHRL:
+                // Without the quotes, and an unterminated literal has no closing one.
+                int from = start + 1, count = Math.max(0, Math.min(length, source.length() - start) - 2);
+
+                // Only a literal with an escape in it has to be copied.
+                if (source.find(from, from + count, '\\', '\\') == from + count)
+                    return window(source, from, count);
+
+                return unescape(window(source, from, count));
+            case EOTS:
+                return "$";
+            default:
+                return type.toString();
+        }
+    }
+
+    /**
+     * A view of a window of the source when it is ASCII, where a byte is a
+     * character, and a decoded copy of it otherwise.
+     */
+    private static CharSequence window(Source source, int start, int length) {
+        return source.isAscii(start, length) ? new Lexeme(source, start, length) : source.text(start, length);
+    }
+
+    /**
+     * Replaces every escape in the text of a literal with the character it
+     * stands for. The escapes have already been checked by the lexer.
+     *
+     * @param text The text of the literal, without its quotes.
+     * @return The text with its escapes decoded.
+     */
+    private static String unescape(CharSequence text) {
+        StringBuilder builder = ESCAPES.get();
+
+        builder.setLength(0);
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+
+            if (c != '\\' || i + 1 == text.length()) {
+                builder.append(c);
+                continue;
+            }
+
+            switch (c = text.charAt(++i)) {
+                case 'n': builder.append('\n'); break;
+                case 't': builder.append('\t'); break;
+                case 'r': builder.append('\r'); break;
+                case 'b': builder.append('\b'); break;
+                case 'f': builder.append('\f'); break;
+                case '0': builder.append('\0'); break;
+                case 'u':
+                    int unit = 0;
+
+                    for (int digit = 0; digit < 4 && i + 1 < text.length(); digit++)
+                        unit = unit << 4 | Character.digit(text.charAt(++i), 16);
+
+                    builder.append((char)unit);
+                    break;
+                default:
+                    // A quote or a backslash stands for itself.
+                    builder.append(c);
+                    break;
+            }
+        }
+
+        return builder.toString();
     }
 
     /**
      * Gets the next lexeme, whether it is a word, number, string, character, or
-     * symbol and returns it.
+     * symbol and returns its type. The lexeme itself runs from {@code tokenStart}
+     * up to the current position.
      *
-     * @return The lexeme of source code that resembles a possible token.
-     * @throws java.io.IOException
+     * @return The type of the lexeme, or null if there was none.
      */
-    private Token nextLexeme() throws Exception {
+    private Type nextLexeme() {
         // Our token result.
-        Token result;
+        Type result;
+
+        // Nothing is wrong with a lexeme until a scanner says so.
+        problem = null;
+        number = 0;
 
         // Check that we haven't hit the end of the file.
         if (current == 0xFFFF) EOF = true;
@@ -195,23 +718,23 @@ public final class Lexer {
 
         // If it is a comment symbol, skip an entire line.
         // Else if it is a space character, call the skipSpace() method.
-        if (current == '#') {
-            skipLine();
-        } else if (isSpace(current)) {
-            skipSpace();
-            if (EOL == true) EOL = !EOL;
+        // Keep going for as long as either follows, so that any number of
+        // comment lines in a row is skipped.
+        while (true) {
+            if (current == '#') {
+                skipLine();
+            } else if (isSpace(current)) {
+                skipSpace();
+            } else break;
         }
 
-        // Set the beginning of a token to this column.
-        beginning = column;
-
-        // check again for comments
-        if (current == '#') skipLine();
+        // The current character is the first of the lexeme.
+        tokenStart = previous;
 
         // Check what type of lexeme we will be lexing.
-        if (Character.isLetter(current))
+        if (CharClass.isLetter(current))
             result = nextWord();
-        else if (Character.isDigit(current))
+        else if (CharClass.isDigit(current))
             result = nextNumber();
         else if (current == '\'')
             result = nextChar();
@@ -229,14 +752,15 @@ public final class Lexer {
     /**
      * Gets the next word lexeme in the source code.
      *
-     * @return The next word lexeme as a token.
-     * @throws java.io.IOException
+     * @return The type of the next word lexeme.
      */
-    private Token nextWord() throws IOException {
+    private Type nextWord() {
+        // Most words are plain ASCII, those are skipped eight bytes at a time.
+        skipTo(source.skipWord(Math.min(position, source.length())));
+
         // For as long as the current character is a letter or digit or _ then
-        // append the current character and read again.
-        while (Character.isLetterOrDigit(current) || current == '_') {
-            builder.append(current);
+        // read again.
+        while (CharClass.isWordPart(current)) {
             current = read();
 
             if (current == 0xFFFF) {
@@ -245,32 +769,36 @@ public final class Lexer {
         }
 
         // compensating.
-        seek(-1);
-        column--;
-
-        // Build the lexeme and clear the buffer.
-        lexeme = builder.toString();
-        builder.delete(0, builder.length());
+        unread();
 
-        // Return the result.
-        return new Token(Type.get(lexeme), lexeme, filename, line, beginning);
+        // Keywords are matched in place.
+        return KeywordTable.match(source, tokenStart, position - tokenStart);
     }
 
     /**
      * Gets the next number lexeme, which can be in the form of a hexadecimal,
-     * binary, octal, integer, decimal, long, or short number.
+     * binary, octal, integer, decimal, long, or short number. The value of the
+     * number is worked out while its digits are read and left in
+     * {@code number}, so no one has to parse the lexeme again.
      *
-     * @return The tokenized number lexeme.
-     * @throws Exception
+     * @return The type of the number lexeme, or {@code Type.UNDEF} if it has a
+     *      suffix it cannot have, a base but no digits, a digit its base does
+     *      not have, or a value too large for its type: an {@code int} without
+     *      a suffix, a {@code long} when wide, and a {@code short} when skinny.
      */
-    private Token nextNumber() throws Exception {
-        Token result;
-
+    private Type nextNumber() {
         // By default.
         Type type = Type.REAL;
-
-        // Append the current number.
-        builder.append(current);
+        // The value of the digits read so far.
+        long value = current - '0';
+        // Whether the value no longer fits in its 64 bits.
+        boolean tooLarge = false;
+        // Whether a digit does not belong to the base of the number.
+        boolean badDigit = false;
+        // Whether a hexadecimal or binary prefix has no digits after it.
+        boolean noDigits = false;
+        // The number of digits after the point of a decimal number.
+        int scale = 0;
 
         // possibly 0, hex, oct, or bin
         if (current == '0') {
@@ -286,58 +814,74 @@ public final class Lexer {
                     type = Type.BIN;
                     break;
                 default:
-                    if (Character.isDigit(current)) type = Type.OCT;
-                    else {
-                        seek(-1);
-                        column--;
+                    if (CharClass.isDigit(current)) {
+                        type = Type.OCT;
+                        value = current - '0';
+                        badDigit = value > 7;
+                    } else {
+                        unread();
                     }
                     break;
             }
         }
 
-        if (type != Type.REAL) {
-            builder.append(current);
-        }
-
         current = read();
 
         switch (type) {
             case HEX:
-                while (Character.isDigit(current) || isHexChar(current)) {
+                noDigits = !isHexChar(current);
+
+                while (isHexChar(current)) {
                     if (current == 0xFFFF) EOF = true;
 
-                    builder.append(current);
+                    tooLarge |= value >>> 60 != 0;
+                    value = value << 4 | Character.digit(current, 16);
                     current = read();
                 }
 
                 break;
             case BIN:
+                noDigits = !isBinChar(current);
+
                 while (isBinChar(current)) {
                     if (current == 0xFFFF) EOF = true;
 
-                    builder.append(current);
+                    tooLarge |= value >>> 63 != 0;
+                    value = value << 1 | current - '0';
                     current = read();
                 }
 
                 break;
             case OCT:
+                while (CharClass.isDigit(current)) {
+                    if (current == 0xFFFF) EOF = true;
+
+                    badDigit |= current > '7';
+                    tooLarge |= value >>> 61 != 0;
+                    value = value << 3 | current - '0';
+                    current = read();
+                }
+
+                break;
             case REAL:
-                while (Character.isDigit(current)) {
+                while (CharClass.isDigit(current)) {
                     if (current == 0xFFFF) EOF = true;
 
-                    builder.append(current);
+                    tooLarge |= value > (Long.MAX_VALUE - (current - '0')) / 10;
+                    value = value * 10 + current - '0';
                     current = read();
                 }
 
-                if (type == Type.REAL && current == '.') {
+                if (current == '.') {
                     type = Type.DEC;
-                    builder.append(current);
                     current = read();
 
-                    while (Character.isDigit(current)) {
+                    while (CharClass.isDigit(current)) {
                         if (current == 0xFFFF) EOF = true;
 
-                        builder.append(current);
+                        tooLarge |= value > (Long.MAX_VALUE - (current - '0')) / 10;
+                        value = value * 10 + current - '0';
+                        scale++;
                         current = read();
                     }
                 }
@@ -345,20 +889,13 @@ public final class Lexer {
                 break;
         }
 
+        // The suffix stays part of the lexeme so lexing goes on after it.
         if (type != Type.REAL && isOtherType(current)) {
-            switch (current) {
-                case 'L':
-                case 'l':
-                    throw new Exception(new TypeConflictException(type, Type.WIDE));
-                case 'S':
-                case 's':
-                    throw new Exception(new TypeConflictException(type, Type.SKINNY));
-            }
+            problem = LexicalError.Code.TYPE_CONFLICT;
+            return Type.UNDEF;
         }
 
         if (type == Type.REAL && isOtherType(current)) {
-            builder.append(current);
-
             switch (current) {
                 case 'L':
                 case 'l':
@@ -367,194 +904,281 @@ public final class Lexer {
                 case 'S':
                 case 's':
                     type = Type.SKINNY;
+                    tooLarge |= value > Short.MAX_VALUE;
                     break;
             }
         } else {
             // compensating
-            seek(-1);
-            column--;
+            unread();
         }
 
-        lexeme = builder.toString();
-        builder.delete(0, builder.length());
+        // An integer without a suffix is an int.
+        if (type == Type.REAL) tooLarge |= value > Integer.MAX_VALUE;
 
-        return new Token(type, lexeme, filename, line, beginning);
-    }
+        // A decimal number is never too large, only too long to work out from
+        // its digits without rounding twice.
+        if (type == Type.DEC) {
+            number = Double.doubleToRawLongBits(decimal(value, scale, tooLarge));
+            return type;
+        }
 
-    /***/
-    private Token nextString() throws IOException {
-        current = read();
+        if (noDigits) {
+            problem = LexicalError.Code.MISSING_DIGITS;
+            return Type.UNDEF;
+        }
 
-        while (current != '\"') {
-            if (current == 0xFFFF) EOF = true;
+        if (badDigit) {
+            problem = LexicalError.Code.DIGIT_OUT_OF_RANGE;
+            return Type.UNDEF;
+        }
 
-            builder.append(current);
-            current = read();
+        if (tooLarge) {
+            problem = LexicalError.Code.NUMBER_TOO_LARGE;
+            return Type.UNDEF;
         }
 
-        lexeme = builder.toString();
-        builder.delete(0, builder.length());
+        number = value;
+        return type;
+    }
+
+    /**
+     * Works out the value of a decimal number from its digits. When both the
+     * digits and the power of ten they are divided by can be held exactly by a
+     * {@code double}, a single division rounds correctly; any other number is
+     * left to {@code Double#parseDouble(String)}.
+     *
+     * @param digits The digits of the number, without the point.
+     * @param scale The number of digits after the point.
+     * @param inexact Whether the digits did not fit in {@code digits}.
+     * @return The value of the number.
+     */
+    private double decimal(long digits, int scale, boolean inexact) {
+        if (!inexact && digits < 1L << 53 && scale < POWERS_OF_TEN.length)
+            return digits / POWERS_OF_TEN[scale];
 
-        return new Token(Type.STRL, lexeme, filename, line, beginning);
+        return Double.parseDouble(source.text(tokenStart, position - tokenStart));
     }
 
-    /***/
-    private Token nextChar() throws IOException {
-        byte indice = 0, limit = 2;
+    /**
+     * Gets the next string literal. Its closing quote is searched for eight
+     * bytes at a time, only stopping at a backslash to check the escape and
+     * step over it, so a literal without escapes is never read character by
+     * character.
+     *
+     * @return The type of the string literal, or {@code Type.UNDEF} if one of
+     *      its escapes is not valid or it is never closed.
+     */
+    private Type nextString() {
+        int index = position;
+
+        while (true) {
+            index = source.find(index, source.length(), '\"', '\\');
+
+            // An unterminated literal ends with the source.
+            if (index >= source.length()) {
+                previous = position = source.length();
+                current = 0xFFFF;
+                EOF = true;
+                problem = LexicalError.Code.UNTERMINATED_LITERAL;
+                break;
+            }
+
+            if (source.get(index) == '\"') {
+                previous = index;
+                position = index + 1;
+                current = '\"';
+                break;
+            }
+
+            // An escaped quote does not end the literal.
+            if (!isEscape(index + 1)) problem = LexicalError.Code.INVALID_ESCAPE;
+
+            index += 2;
+        }
+
+        return problem == null ? Type.STRL : Type.UNDEF;
+    }
+
+    /**
+     * Gets the next character literal.
+     *
+     * @return The type of the character literal, or {@code Type.UNDEF} if its
+     *      escape is not valid, it holds more than one character, or it is
+     *      never closed.
+     */
+    private Type nextChar() {
+        int indice = 0, limit = 2;
 
         current = read();
-        builder.append(current);
         indice++;
 
         if (current == '\\') {
+            if (!isEscape(position)) problem = LexicalError.Code.INVALID_ESCAPE;
+
+            // The quote must come right after the escape: four hexadecimal
+            // digits after a u, or the single character of any other.
             if ((current = read()) == 'u') {
-                builder.append(current);
-                limit = 9;
+                limit = 6;
             } else {
-                limit = 3;
+                limit = 2;
+            }
+
+            // An escaped quote does not end the literal.
+            if (current != 0xFFFF) {
+                current = read();
+                indice++;
             }
         }
 
         while (current != '\'') {
+            // An unterminated literal ends with the source.
+            if (current == 0xFFFF) {
+                EOF = true;
+                unread();
+                problem = LexicalError.Code.UNTERMINATED_LITERAL;
+                break;
+            }
+
             current = read();
             indice++;
+        }
+
+        if (problem == null && indice > limit) {
+            problem = LexicalError.Code.CHARACTER_TOO_LONG;
+            return Type.UNDEF;
+        }
+
+        return problem == null ? Type.CHRL : Type.UNDEF;
+    }
+
+    /**
+     * Gets the next symbol lexeme by walking the {@code SymbolAutomaton} for as
+     * long as it has a transition, then taking the longest symbol it accepted.
+     * A run of characters that do not begin any token becomes a single
+     * undefined token, so that a stretch of garbage is neither a token nor a
+     * mistake for every byte of it.
+     *
+     * @return The type of the symbol lexeme.
+     */
+    private Type nextSymbol() {
+        int state = SymbolAutomaton.step(SymbolAutomaton.START, current);
 
-            if (current == 0xFFFF) EOF = true;
+        // Not the beginning of any symbol.
+        if (state == SymbolAutomaton.NONE) {
+            while (isUnknown(current = read()));
 
-            if (indice < limit) builder.append(current);
+            // compensating
+            unread();
+
+            problem = LexicalError.Code.UNKNOWN_CHARACTER;
+            return Type.UNDEF;
         }
 
-        if (indice > limit)
-            System.err.println("Number of characters exceeded expected limit.");
+        Type type = SymbolAutomaton.accepts(state);
+        int end = position;
+        int index = position;
 
-        lexeme = builder.toString();
-        builder.delete(0, builder.length());
+        // Keep going for as long as there is a transition, remembering the end
+        // of the longest symbol we have accepted.
+        while (index < source.length()) {
+            state = SymbolAutomaton.step(state, source.get(index++));
 
-        return new Token(Type.CHRL, lexeme, filename, line, beginning);
-    }
+            if (state == SymbolAutomaton.NONE) break;
 
-    /***/
-    private Token nextSymbol() throws IOException {
-        builder.append(current);
-        
-        // build the lexeme and then get the type when constructing the token.
-        switch (current) {
-            case '+':
-                checkAndBuild('+', '=');
-                break;
-            case '-':
-                checkAndBuild('-', '=');
-                break;
-            case '*':
-                checkAndBuild('*', '=');
-                break;
-            case '/':
-                checkAndBuild('/', '=');
-                break;
-            case '=':
-                checkAndBuild('=');
-                break;
-            case '%':
-            case '!':
-            case '^':
-                checkAndBuild('=');
-                break;
-            case '<':
-                checkAndBuild('<', '=');
-                checkAndBuild('<', '=');
-                break;
-            case '>':
-                checkAndBuild('>', '=');
-                checkAndBuild('>', '=');
-                break;
-            case '&':
-                checkAndBuild('&', '=');
-                break;
-            case '|':
-                checkAndBuild('|', '=');
-                break;
-            case '.':
-                checkAndBuild('.');
-                if (current == '.') {
-                    builder.append(current);
-                    current = read();
-                }
+            if (SymbolAutomaton.accepts(state) != null) {
+                type = SymbolAutomaton.accepts(state);
+                end = index;
+            }
+        }
 
-                break;
-            case ':':
-                checkAndBuild(':');
-                break;
-            case '?':
-                checkAndBuild('?');
-                break;
-            case '~':
-            case '{':
-            case '}':
-            case '[':
-            case ']':
-            case '(':
-            case ')':
-            case ';':
-            case '@':
-            case ',':
-                break;
+        // Only the symbols of Type are accepted, so their value is the lexeme.
+        if (type == null) {
+            problem = LexicalError.Code.UNKNOWN_CHARACTER;
+            return Type.UNDEF;
         }
 
-        lexeme = builder.toString();
-        builder.delete(0, builder.length());
+        position = end;
+        current = source.get(end - 1);
 
-        return new Token(Type.getSymbol(lexeme), lexeme, filename, line, beginning);
+        return type;
+    }
+
+    /** Tells whether a character does not begin any token. */
+    private boolean isUnknown(int current) {
+        if (current == 0xFFFF || current == '#' || current == '\'' || current == '\"' || isSpace(current))
+            return false;
+
+        // Digits other than the ASCII ones can be part of a word, but begin nothing.
+        if (CharClass.isWordPart(current) && (current < 128 || CharClass.isLetter(current)))
+            return false;
+
+        return SymbolAutomaton.step(SymbolAutomaton.START, current) == SymbolAutomaton.NONE;
     }
 
     /***/
-    private boolean isSpace(char current) {
-        return current == ' ' || current == '\t' || current == '\n' || current == '\r';
+    private boolean isSpace(int current) {
+        return CharClass.is(current, CharClass.SPACE);
     }
 
     /***/
-    private boolean isHexChar(char current) {
-        return current >= 'a' && current <= 'f' ||
-               current >= 'A' && current <= 'F';
+    private boolean isHexChar(int current) {
+        return CharClass.is(current, CharClass.HEX);
+    }
+
+    /**
+     * Tells whether the characters after a backslash make up an escape, which
+     * is one of {@code n t r b f 0 ' " \\} or a {@code u} and four hexadecimal
+     * digits.
+     *
+     * @param index The index of the character after the backslash.
+     * @return Whether it begins a valid escape.
+     */
+    private boolean isEscape(int index) {
+        if (index >= source.length()) return false;
+
+        switch (source.get(index)) {
+            case 'n':
+            case 't':
+            case 'r':
+            case 'b':
+            case 'f':
+            case '0':
+            case '\'':
+            case '\"':
+            case '\\':
+                return true;
+            case 'u':
+                if (index + 4 >= source.length()) return false;
+
+                for (int i = 1; i <= 4; i++)
+                    if (!isHexChar(source.get(index + i))) return false;
+
+                return true;
+            default:
+                return false;
+        }
     }
 
     /***/
-    private boolean isBinChar (char current) {
+    private boolean isBinChar (int current) {
         return current == '1' || current == '0';
     }
 
     /***/
-    private boolean isOtherType(char current) {
+    private boolean isOtherType(int current) {
         return current == 'L' ||
                current == 'l' ||
                current == 'S' ||
                current == 's';
     }
 
-    /***/
-    private void seek(int dist) throws IOException {
-        fchan.position(fchan.position() + dist);
-    }
-
-    /***/
-    private void checkAndBuild(char type) throws IOException {
-        current = read();
-
-        if (current == type) builder.append(current);
-        else {
-            seek(-1);
-            column--;
-        }
+    /** Moves forward to the given index. */
+    private void skipTo(int index) {
+        position = Math.max(position, index);
     }
 
-    /***/
-    private void checkAndBuild(char typeOne, char typeTwo) throws IOException {
-        current = read();
-
-        if (current == typeOne || current == typeTwo)
-            builder.append(current);
-        else {
-            seek(-1);
-            column--;
-        }
+    /** Steps back over the last character read. */
+    private void unread() {
+        position = previous;
     }
 }
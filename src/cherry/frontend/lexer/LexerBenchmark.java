@@ -0,0 +1,130 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.lexer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * A small stand alone benchmark for the {@code Lexer}, it reports the bytes per
+ * second of each given file for: the old way of reading a file, one
+ * {@code FileInputStream#read()} per character; reading the same file through a
+ * {@code Source}; lexing the whole file; and splitting it into the spans of the
+ * {@code Highlighter}.
+ *
+ * <p>
+ * Run it with: {@code java -cp Cherry.jar cherry.frontend.lexer.LexerBenchmark
+ * [files...]}. Each measurement is repeated a few times and the best run is
+ * reported so that the JIT has had a chance to warm up.
+ * </p>
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+public final class LexerBenchmark {
+    /** The number of times each measurement is repeated. */
+    private static final int RUNS = 5;
+
+    /**
+     * @param args The files to benchmark.
+     * @throws Exception if one of the files could not be read or lexed.
+     */
+    public static void main(String... args) throws Exception {
+        System.out.printf("%-32s %14s %14s %14s %14s%n", "file", "stream B/s", "source B/s", "lex B/s", "highlight B/s");
+
+        for (String path : args) {
+            File file = new File(path);
+            long bytes = file.length();
+
+            System.out.printf("%-32s %14.0f %14.0f %14.0f %14.0f%n", file.getName(),
+                    throughput(bytes, () -> readStream(file)),
+                    throughput(bytes, () -> readSource(file)),
+                    throughput(bytes, () -> new Lexer(file).lex().size()),
+                    throughput(bytes, () -> highlight(file)));
+        }
+    }
+
+    /**
+     * Runs the given task {@code RUNS} times and returns the best throughput.
+     *
+     * @param bytes The number of bytes the task works through.
+     * @param task The task to time.
+     * @return The best throughput in bytes per second.
+     */
+    private static double throughput(long bytes, Task task) throws Exception {
+        long best = Long.MAX_VALUE;
+        long sink = 0;
+
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            sink += task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        // Keeps the work from being optimized away.
+        if (sink == Long.MIN_VALUE) System.out.print("");
+
+        return bytes / (Math.max(best, 1) / 1e9);
+    }
+
+    /** Reads the file a single character at a time, the way the lexer used to. */
+    private static long readStream(File file) throws IOException {
+        long sum = 0;
+
+        try (FileInputStream fis = new FileInputStream(file)) {
+            int read;
+
+            while ((read = fis.read()) != -1) sum += read;
+        }
+
+        return sum;
+    }
+
+    /** Reads the file by index through a {@code Source}. */
+    private static long readSource(File file) throws IOException {
+        long sum = 0;
+
+        try (Source source = Source.open(file)) {
+            for (int i = 0; i < source.length(); i++) sum += source.get(i);
+        }
+
+        return sum;
+    }
+
+    /** Splits the file into spans, counting them. */
+    private static long highlight(File file) throws IOException {
+        long[] spans = { 0 };
+
+        Highlighter.highlight(file, (start, length, category) -> spans[0]++);
+
+        return spans[0];
+    }
+
+    /** A single timed piece of work. */
+    private interface Task {
+        /** @return Some result of the work, to keep it from being removed. */
+        long run() throws Exception;
+    }
+}
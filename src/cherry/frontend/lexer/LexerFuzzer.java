@@ -0,0 +1,387 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.lexer;
+
+import cherry.frontend.grammar.Token;
+import cherry.frontend.grammar.Type;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A stand alone fuzzer for the {@code Lexer}. It lexes inputs made up of
+ * random tokens of the language, mutations of those and of any given files,
+ * and random bytes, and fails on any input that the lexer does not finish in
+ * time, lexes into tokens that do not add up, or lexes slower than a floor.
+ *
+ * <p>
+ * Every input is lexed on a separate thread so that one the lexer never
+ * finishes is caught by a time limit instead of hanging the fuzzer. The time
+ * limit and the floor both follow from the least number of megabytes a second
+ * the lexer must manage; the floor is only checked on inputs large enough to
+ * be timed, and only after the lexer has been warmed up. Inputs that fail are written to {@code fuzz} to be lexed again.
+ * </p>
+ *
+ * <p>
+ * Run it with: {@code java -cp Cherry.jar cherry.frontend.lexer.LexerFuzzer
+ * [seconds [MB/s [seed files...]]]}. It runs for ten seconds with a floor of
+ * five megabytes a second if not told otherwise, and exits with {@code 1} if
+ * any input failed.
+ * </p>
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+public final class LexerFuzzer {
+    /** The smallest input the floor is checked on. */
+    private static final int TIMED = 64 << 10;
+    /** The least time any input is given to finish in, in milliseconds. */
+    private static final long GRACE = 2000;
+    /** The time spent lexing before anything is timed, in milliseconds. */
+    private static final long WARMUP = 3000;
+    /** The spelling of every keyword and symbol. */
+    private static final String[] WORDS;
+    /** Characters that take up more than a single byte. */
+    private static final String[] WIDE = { "é", "名前", "😀", "ÿ", "�" };
+    /** Bytes that change how everything after them is lexed. */
+    private static final byte[] SPECIAL = { '"', '\'', '\\', '#', '\n', '\r', '.', '0', (byte)0x80, (byte)0xF0 };
+
+    /** Collecting the spelling of every keyword and symbol. */
+    static {
+        List<String> words = new ArrayList<>();
+
+        for (Type type : Type.values())
+            words.add(type.toString());
+
+        WORDS = words.toArray(new String[0]);
+    }
+
+    /** Not to be constructed. */
+    private LexerFuzzer() {}
+
+    /**
+     * @param args How many seconds to run for, the floor in megabytes a second,
+     *      and files to mutate, all optionally.
+     * @throws Exception if a failing input could not be written.
+     */
+    public static void main(String... args) throws Exception {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 10;
+        double floor = args.length > 1 ? Double.parseDouble(args[1]) : 5;
+        List<byte[]> seeds = new ArrayList<>();
+
+        for (int i = 2; i < args.length; i++)
+            seeds.add(Files.readAllBytes(new File(args[i]).toPath()));
+
+        ExecutorService worker = worker();
+
+        Random random = new Random();
+
+        // Lexing for a while first, so the floor is held against the compiled lexer.
+        for (long warm = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WARMUP); System.nanoTime() < warm;) {
+            byte[] input = input(random, seeds, true);
+            new Lexer(Source.of("warmup", input)).tokenize();
+        }
+
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long inputs = 0, bytes = 0;
+        int failures = 0;
+        double slowest = Double.MAX_VALUE;
+
+        while (System.nanoTime() < end) {
+            byte[] input = input(random, seeds, inputs % 50 == 49);
+            long limit = GRACE + (long)(input.length / (floor * 1e3)) * 4;
+            Future<double[]> result = worker.submit(() -> check(input));
+            String failure;
+
+            try {
+                double rate = result.get(limit, TimeUnit.MILLISECONDS)[0];
+
+                // A slow input has to be slow again to fail, the first time may have been compiling.
+                if (input.length >= TIMED && rate < floor)
+                    rate = Math.max(rate, worker.submit(() -> check(input)).get(limit, TimeUnit.MILLISECONDS)[0]);
+
+                if (input.length >= TIMED) slowest = Math.min(slowest, rate);
+
+                failure = input.length >= TIMED && rate < floor
+                        ? String.format("lexed at %.2f MB/s, below the floor of %.2f MB/s", rate, floor)
+                        : null;
+            } catch (TimeoutException ex) {
+                failure = "did not finish within " + limit + " ms";
+            } catch (Exception ex) {
+                failure = String.valueOf(ex.getCause() == null ? ex : ex.getCause());
+            }
+
+            inputs++;
+            bytes += input.length;
+
+            if (failure != null) {
+                failures++;
+                System.out.println("FAILED " + save(input, failures) + ": " + failure);
+
+                // A thread that never finishes cannot be stopped, only left behind.
+                if (!result.isDone()) worker = worker();
+            }
+        }
+
+        System.out.printf("%d inputs, %d bytes, slowest timed input %.2f MB/s, %d failures%n",
+                inputs, bytes, slowest == Double.MAX_VALUE ? 0 : slowest, failures);
+
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /** A thread to lex on, which does not keep the fuzzer from exiting. */
+    private static ExecutorService worker() {
+        return Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "fuzzed-lexer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Lexes an input both into a {@code TokenBuffer} and as a stream, and
+     * checks that the tokens add up.
+     *
+     * @param input The input to lex.
+     * @return The megabytes a second the buffer was lexed at, at best.
+     * @throws java.lang.IllegalStateException if the tokens do not add up.
+     */
+    private static double[] check(byte[] input) throws Exception {
+        TokenBuffer buffer = null;
+        long fastest = Long.MAX_VALUE;
+
+        // Lexed twice, so a collection in the middle of one is not blamed on the lexer.
+        for (int run = 0; run < 2; run++) {
+            long start = System.nanoTime();
+            buffer = new Lexer(Source.of("fuzzed", input)).tokenize();
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+
+        double rate = input.length / 1e6 / Math.max(fastest / 1e9, 1e-9);
+
+        if (buffer.size() == 0 || buffer.type(buffer.size() - 1) != Type.EOTS)
+            throw new IllegalStateException("The tokens do not end with the end of the stream.");
+
+        for (int i = 0; i < buffer.size(); i++) {
+            int end = buffer.start(i) + buffer.length(i);
+
+            if (buffer.start(i) < 0 || end > input.length || i > 0 && buffer.start(i) < buffer.start(i - 1))
+                throw new IllegalStateException("Token " + i + " is out of place: " + buffer.start(i) + "+" + buffer.length(i));
+
+            buffer.text(i);
+        }
+
+        try (Lexer lexer = new Lexer(Source.of("fuzzed", input))) {
+            for (int i = 0; i < buffer.size(); i++) {
+                Token token = lexer.next();
+
+                if (token.type != buffer.type(i) || token.offset != buffer.start(i))
+                    throw new IllegalStateException("Token " + i + " is not the same when streamed: " + token);
+            }
+        }
+
+        return new double[] { rate };
+    }
+
+    /**
+     * Makes the next input, mostly up to a few kilobytes but now and then big
+     * enough to be timed.
+     *
+     * @param random Where to get the randomness from.
+     * @param seeds The given files.
+     * @param timed Whether the input must be big enough to be timed.
+     * @return The input.
+     */
+    private static byte[] input(Random random, List<byte[]> seeds, boolean timed) {
+        int size = timed ? TIMED + random.nextInt(TIMED * 8) : random.nextInt(4096);
+
+        switch (random.nextInt(4)) {
+            case 0:
+                return mutate(random, tokens(random, size));
+            case 1:
+                // With no files to mutate, random tokens are used instead.
+                if (seeds.isEmpty()) return tokens(random, size);
+
+                return mutate(random, repeat(seeds.get(random.nextInt(seeds.size())), size));
+            case 2:
+                return tokens(random, size);
+            default:
+                byte[] noise = new byte[size];
+                random.nextBytes(noise);
+                return noise;
+        }
+    }
+
+    /**
+     * Strings random tokens of the language together, with the spaces and
+     * comments between them.
+     */
+    private static byte[] tokens(Random random, int size) {
+        StringBuilder text = new StringBuilder(size + 64);
+
+        while (text.length() < size) {
+            switch (random.nextInt(12)) {
+                case 0:
+                case 1:
+                case 2:
+                case 3:
+                    text.append(WORDS[random.nextInt(WORDS.length)]);
+                    break;
+                case 4:
+                    text.append(word(random, 1 + random.nextInt(12)));
+                    break;
+                case 5:
+                    text.append(number(random));
+                    break;
+                case 6:
+                    text.append('"').append(literal(random, random.nextInt(40)));
+
+                    // Now and then left unterminated.
+                    if (random.nextInt(50) != 0) text.append('"');
+                    break;
+                case 7:
+                    text.append('\'').append(literal(random, random.nextInt(3)));
+
+                    if (random.nextInt(50) != 0) text.append('\'');
+                    break;
+                case 8:
+                    text.append('#').append(literal(random, random.nextInt(60)).replace("\n", "")).append('\n');
+                    break;
+                case 9:
+                    text.append(WIDE[random.nextInt(WIDE.length)]);
+                    break;
+                default:
+                    text.append(" \t\n\r\n  ".charAt(random.nextInt(7)));
+                    break;
+            }
+
+            // Tokens mostly have something between them.
+            if (random.nextInt(3) != 0) text.append(random.nextInt(8) == 0 ? '\n' : ' ');
+        }
+
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** A random identifier. */
+    private static String word(Random random, int length) {
+        String letters = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ_0123456789";
+        StringBuilder word = new StringBuilder(length);
+
+        word.append(letters.charAt(random.nextInt(53)));
+
+        for (int i = 1; i < length; i++)
+            word.append(letters.charAt(random.nextInt(letters.length())));
+
+        return word.toString();
+    }
+
+    /** A random number in any of the forms, now and then one that is not valid. */
+    private static String number(Random random) {
+        long value = random.nextLong() >>> random.nextInt(64);
+
+        switch (random.nextInt(8)) {
+            case 0: return "0x" + Long.toHexString(value);
+            case 1: return "0b" + Long.toBinaryString(value & 0xFFFF);
+            case 2: return "0" + Long.toOctalString(value);
+            case 3: return value % 1000 + "." + random.nextInt(100000);
+            case 4: return value % 100000 + (random.nextBoolean() ? "L" : "s");
+            case 5: return value + "9999999999";
+            default: return Long.toString(value);
+        }
+    }
+
+    /** The inside of a random literal, escapes and all. */
+    private static String literal(Random random, int length) {
+        String[] parts = { "a", "Z", " ", "1", "\\n", "\\t", "\\\"", "\\'", "\\\\", "\\u0041", "\\q", "\\u12", "\n",
+                           "é", "#", "'", "\\" };
+        StringBuilder literal = new StringBuilder();
+
+        for (int i = 0; i < length; i++)
+            literal.append(parts[random.nextInt(parts.length)]);
+
+        return literal.toString();
+    }
+
+    /** Repeats an input until it is at least the given size. */
+    private static byte[] repeat(byte[] seed, int size) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size + seed.length);
+
+        do {
+            out.write(seed, 0, seed.length);
+        } while (out.size() < size && seed.length > 0);
+
+        return out.toByteArray();
+    }
+
+    /** Changes a few bytes of an input, where a change hurts a lexer the most. */
+    private static byte[] mutate(Random random, byte[] input) {
+        byte[] result = input.clone();
+        int changes = 1 + random.nextInt(8);
+
+        for (int i = 0; i < changes && result.length > 0; i++) {
+            int at = random.nextInt(result.length);
+
+            switch (random.nextInt(4)) {
+                case 0:
+                    result[at] = SPECIAL[random.nextInt(SPECIAL.length)];
+                    break;
+                case 1:
+                    result[at] ^= 1 << random.nextInt(8);
+                    break;
+                case 2:
+                    // Cut the input short, right in the middle of whatever is there.
+                    result = Arrays.copyOf(result, at);
+                    break;
+                default:
+                    result[at] = (byte)random.nextInt(256);
+                    break;
+            }
+        }
+
+        return result;
+    }
+
+    /** Writes a failing input where it can be found again. */
+    private static String save(byte[] input, int failure) throws IOException {
+        File folder = new File("fuzz");
+
+        if (!folder.exists()) folder.mkdir();
+
+        File file = new File(folder, "failure-" + failure + ".cherry");
+        Files.write(file.toPath(), input);
+
+        return file.getPath();
+    }
+}
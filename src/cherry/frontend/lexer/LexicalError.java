@@ -0,0 +1,123 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.lexer;
+
+/**
+ * A mistake found while lexing. The {@code Lexer} never stops for one; the
+ * characters in question become a {@code Type.UNDEF} token and the mistake is
+ * written down, so that every mistake in a file is found in a single pass and
+ * none of them costs an exception.
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+public final class LexicalError {
+    /**
+     * Each kind of mistake, with the code it is reported under.
+     */
+    public enum Code {
+        /** A character that does not begin any token. */
+        UNKNOWN_CHARACTER("L001", "Character does not begin any token."),
+        /** A wide or skinny suffix on a number that cannot have one. */
+        TYPE_CONFLICT("L002", "Only integer numbers can be wide or skinny."),
+        /** A character literal with more in it than a single character. */
+        CHARACTER_TOO_LONG("L003", "Number of characters exceeded expected limit."),
+        /** A number whose value does not fit in its type. */
+        NUMBER_TOO_LARGE("L004", "Number is too large for its type."),
+        /** A digit that the base of its number does not have, such as 8 in octal. */
+        DIGIT_OUT_OF_RANGE("L005", "Digit does not belong to the base of the number."),
+        /** A backslash in a string or character literal that does not begin an escape. */
+        INVALID_ESCAPE("L006", "Escape sequence is not valid."),
+        /** A string or character literal that the file ends inside of. */
+        UNTERMINATED_LITERAL("L007", "Literal is not closed before the end of the file."),
+        /** A hexadecimal or binary prefix without any digits after it. */
+        MISSING_DIGITS("L008", "Number has a base but no digits.");
+
+        /** The code this kind of mistake is reported under. */
+        public final String id;
+        /** What went wrong. */
+        public final String description;
+
+        /***/
+        Code(String id, String description) {
+            this.id = id;
+            this.description = description;
+        }
+    }
+
+    /** The kind of mistake. */
+    public final Code code;
+    /** The name of the file the mistake is in. */
+    public final String filename;
+    /** The index of the first character of the mistake in its source. */
+    public final int start;
+    /** The number of characters in the mistake. */
+    public final int length;
+    /** The line the mistake is on. */
+    public final int line;
+    /** The column the mistake starts at. */
+    public final int column;
+
+    /**
+     * Constructs a new {@code LexicalError} with the given data.
+     *
+     * @param code The kind of mistake.
+     * @param filename The name of the file the mistake is in.
+     * @param start The index of the first character of the mistake.
+     * @param length The number of characters in the mistake.
+     * @param line The line the mistake is on.
+     * @param column The column the mistake starts at.
+     */
+    public LexicalError(Code code, String filename, int start, int length, int line, int column) {
+        this.code = code;
+        this.filename = filename;
+        this.start = start;
+        this.length = length;
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * Constructs a new {@code LexicalError}, finding its line and column in the
+     * lines of its source.
+     *
+     * @param code The kind of mistake.
+     * @param filename The name of the file the mistake is in.
+     * @param lines The lines of the source the mistake is in.
+     * @param start The index of the first character of the mistake.
+     * @param length The number of characters in the mistake.
+     */
+    public LexicalError(Code code, String filename, LineMap lines, int start, int length) {
+        this(code, filename, start, length, lines.line(start), lines.column(start));
+    }
+
+    /**
+     * @return The string form of the mistake.
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "[" + code.id + "] " + code.description + " AT: " + filename + ":" + line + ":" + column;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.lexer;
+
+import java.util.Arrays;
+
+/**
+ * The index of the first character of every line of a {@code Source}, so that
+ * the line and column of any index can be found by a binary search instead of
+ * being counted character by character while lexing. Positions are only ever
+ * needed for diagnostics, so tokens keep the index they start at and ask this
+ * for their line and column when someone wants to know.
+ *
+ * <p>
+ * A line ends at a line feed, a carriage return, or a carriage return directly
+ * followed by a line feed. The map is built in a single pass over the source
+ * the first time a line is asked for. A map handed to a token keeps the
+ * contents of its source, so lines and columns can be found after the source
+ * is closed.
+ * </p>
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+public final class LineMap {
+    /** The source the lines are in. */
+    private final Source source;
+    /** The index of the first character of each line, in order. */
+    private int[] starts;
+    /** The number of lines. */
+    private int count;
+    /** The last column found, which the next one on its line counts on from. */
+    private volatile Mark mark;
+
+    /**
+     * Constructs a map of the lines of the given source, which are found the
+     * first time one of them is asked for.
+     *
+     * @param source The source to find the lines of.
+     */
+    LineMap(Source source) {
+        this.source = source;
+    }
+
+    /**
+     * @return The number of lines in the source.
+     */
+    public int lines() {
+        index();
+        return count;
+    }
+
+    /**
+     * @param line The line, counting from one.
+     * @return The index of the first character of the line.
+     */
+    public int start(int line) {
+        int[] starts = index();
+
+        if (line < 1 || line > count)
+            throw new IndexOutOfBoundsException("Line: " + line + " of " + count);
+
+        return starts[line - 1];
+    }
+
+    /**
+     * @param offset The index of a character in the source.
+     * @return The line the character is on, counting from one.
+     */
+    public int line(int offset) {
+        int[] starts = index();
+        int low = 0, high = count - 1;
+
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+
+            if (starts[middle] <= offset) low = middle;
+            else high = middle - 1;
+        }
+
+        return low + 1;
+    }
+
+    /**
+     * Finds the column of a character. Columns are usually asked for in order,
+     * so counting carries on from the last column found when it is earlier on
+     * the same line, keeping a long line from being counted over and over.
+     *
+     * @param offset The index of a character in the source.
+     * @return The column the character is at, counting characters from one.
+     */
+    public int column(int offset) {
+        int end = Math.min(offset, source.length());
+        int start = start(line(end));
+        Mark last = mark;
+        int column;
+
+        if (last != null && last.offset >= start && last.offset <= end)
+            column = last.column + source.characters(last.offset, end);
+        else
+            column = source.characters(start, end) + 1;
+
+        mark = new Mark(end, column);
+        return column;
+    }
+
+    /**
+     * Finds every line in the source in a single pass, the first time it is
+     * called.
+     *
+     * @return The index of the first character of each line.
+     */
+    private synchronized int[] index() {
+        if (starts != null) return starts;
+
+        int length = source.length();
+        int[] found = new int[Math.max(16, length / 32)];
+        int lines = 1;
+
+        for (int index = source.findLineBreak(0); index < length; index = source.findLineBreak(index)) {
+            // A carriage return and a line feed end a single line.
+            if (source.get(index++) == '\r' && index < length && source.get(index) == '\n')
+                index++;
+
+            if (lines == found.length) found = Arrays.copyOf(found, lines * 2);
+
+            found[lines++] = index;
+        }
+
+        count = lines;
+        starts = found;
+
+        return starts;
+    }
+
+    /** A character index and the column it is at. */
+    private static final class Mark {
+        /** The index of the character. */
+        final int offset;
+        /** The column the character is at. */
+        final int column;
+
+        /***/
+        Mark(int offset, int column) {
+            this.offset = offset;
+            this.column = column;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.lexer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A small stand alone benchmark for the runs the {@code Lexer} skips eight
+ * bytes at a time: comments, blanks, and words. For each kind of generated
+ * input it reports the bytes per second of skipping the runs one byte at a
+ * time, skipping them through the {@code Source}, and lexing the whole input.
+ *
+ * <p>
+ * Run it with: {@code java -cp Cherry.jar cherry.frontend.lexer.ScanBenchmark
+ * [megabytes]}. Each input is about the given size, four megabytes if none is
+ * given.
+ * </p>
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+public final class ScanBenchmark {
+    /** The number of times each measurement is repeated. */
+    private static final int RUNS = 5;
+
+    /**
+     * @param args The size of each input in megabytes, optionally.
+     * @throws Exception if one of the inputs could not be lexed.
+     */
+    public static void main(String... args) throws Exception {
+        int size = (args.length > 0 ? Integer.parseInt(args[0]) : 4) << 20;
+
+        System.out.printf("%-12s %14s %14s %14s%n", "input", "byte B/s", "word B/s", "lex B/s");
+
+        run("comments", generate(size,
+                "# A comment that goes on for a good while, like most of them do.\n"));
+        run("blanks", generate(size,
+                "                                value = other;\n\n\t\t\t\t\n"));
+        run("words", generate(size,
+                "some_rather_long_identifier anotherIdentifier2 x the_third_one_\n"));
+    }
+
+    /**
+     * Measures and prints a line for the given input.
+     *
+     * @param name The name of the input.
+     * @param contents The input.
+     */
+    private static void run(String name, byte[] contents) throws Exception {
+        Source source = Source.of(name, contents);
+
+        System.out.printf("%-12s %14.0f %14.0f %14.0f%n", name,
+                throughput(contents.length, () -> skipBytes(source)),
+                throughput(contents.length, () -> skipWords(source)),
+                throughput(contents.length, () -> new Lexer(Source.of(name, contents)).tokenize().size()));
+    }
+
+    /**
+     * Repeats the given line until it is at least {@code size} bytes long.
+     *
+     * @param size The smallest size of the result.
+     * @param line The line to repeat.
+     * @return The generated input.
+     */
+    private static byte[] generate(int size, String line) {
+        StringBuilder builder = new StringBuilder(size + line.length());
+
+        while (builder.length() < size) builder.append(line);
+
+        return builder.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /** Walks the source skipping every run one byte at a time. */
+    private static long skipBytes(Source source) {
+        long runs = 0;
+        int length = source.length();
+
+        for (int index = 0; index < length; runs++) {
+            int c = source.get(index);
+
+            if (c == '#') {
+                while (index < length && source.get(index) != '\n' && source.get(index) != '\r') index++;
+            } else if (c == ' ' || c == '\t') {
+                while (index < length && (source.get(index) == ' ' || source.get(index) == '\t')) index++;
+            } else if (CharClass.is((char)c, CharClass.WORD)) {
+                while (index < length && CharClass.is((char)source.get(index), CharClass.WORD)) index++;
+            } else {
+                index++;
+            }
+        }
+
+        return runs;
+    }
+
+    /** Walks the source skipping every run eight bytes at a time. */
+    private static long skipWords(Source source) {
+        long runs = 0;
+        int length = source.length();
+
+        for (int index = 0; index < length; runs++) {
+            int c = source.get(index);
+
+            if (c == '#')
+                index = source.findLineBreak(index);
+            else if (c == ' ' || c == '\t')
+                index = source.skipBlanks(index);
+            else if (CharClass.is((char)c, CharClass.WORD))
+                index = source.skipWord(index);
+            else
+                index++;
+        }
+
+        return runs;
+    }
+
+    /**
+     * Runs the given task {@code RUNS} times and returns the best throughput.
+     *
+     * @param bytes The number of bytes the task works through.
+     * @param task The task to time.
+     * @return The best throughput in bytes per second.
+     */
+    private static double throughput(long bytes, Task task) throws Exception {
+        long best = Long.MAX_VALUE;
+        long sink = 0;
+
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            sink += task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        // Keeps the work from being optimized away.
+        if (sink == Long.MIN_VALUE) System.out.print("");
+
+        return bytes / (Math.max(best, 1) / 1e9);
+    }
+
+    /** A single timed piece of work. */
+    private interface Task {
+        /** @return Some result of the work, to keep it from being removed. */
+        long run() throws Exception;
+    }
+}
@@ -0,0 +1,464 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.lexer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * A {@code Source} is the entire contents of a single source file held in a
+ * {@code ByteBuffer}, so that the {@code Lexer} can scan it by index instead of
+ * asking the operating system for one character at a time.
+ *
+ * <p>
+ * Large files are memory mapped, this way the operating system pages them in
+ * as the {@code Lexer} walks through them. Small files are read in one go into
+ * a heap buffer that is kept per thread and handed back when the {@code Source}
+ * is closed, so a thread lexing many small files only ever allocates one.
+ * Tokens and their text are views of the contents, so once one of them has
+ * been handed out the buffer is kept for them instead: it is neither handed
+ * back to the pool nor edited in place, and they stay good after the
+ * {@code Source} is closed.
+ * </p>
+ *
+ * <p>
+ * The runs the {@code Lexer} spends most of its time in, blanks, comments, and
+ * words, can be skipped eight bytes at a time: each {@code long} read from the
+ * buffer is tested for all of its bytes at once with a few arithmetic tricks,
+ * and only the last few bytes of the file are looked at one by one.
+ * </p>
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+public final class Source implements Closeable {
+    /** Files of this size or larger are memory mapped instead of read. */
+    static final int MAP_THRESHOLD = 1 << 20;
+    /** The heap buffer each thread reuses for reading small files. */
+    private static final ThreadLocal<ByteBuffer> POOL = new ThreadLocal<>();
+    /** A one in every byte of a {@code long}. */
+    private static final long ONES = 0x0101010101010101L;
+    /** The high bit of every byte of a {@code long}. */
+    private static final long HIGHS = 0x8080808080808080L;
+    /** The low seven bits of every byte of a {@code long}. */
+    private static final long LOWS = 0x7F7F7F7F7F7F7F7FL;
+    /** The name of the file this {@code Source} holds. */
+    public final String filename;
+    /** The contents of the file. */
+    private final ByteBuffer buffer;
+    /** The same contents read in little endian order, so the first byte is the lowest. */
+    private final ByteBuffer words;
+    /** The number of bytes in the file. */
+    private final int length;
+    /** Tells whether the buffer belongs to the pool and must be handed back. */
+    private final boolean pooled;
+    /** Tells whether the buffer was made by {@code edit} and can be edited in place. */
+    private final boolean editable;
+    /** Tells whether this {@code Source} has been closed. */
+    private boolean closed = false;
+    /** Tells whether something made from the contents may outlive this {@code Source}. */
+    private volatile boolean kept = false;
+    /** Where the lines of this {@code Source} start. */
+    private LineMap lines;
+
+    /**
+     * Constructs a new {@code Source} over the given buffer.
+     *
+     * @param filename The name of the file the contents came from.
+     * @param buffer The contents of the file, positioned at zero.
+     * @param pooled Whether the buffer must be handed back to the pool.
+     * @param editable Whether the buffer can be edited in place.
+     */
+    private Source(String filename, ByteBuffer buffer, boolean pooled, boolean editable) {
+        this.filename = filename;
+        this.buffer = buffer;
+        this.words = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.length = buffer.limit();
+        this.pooled = pooled;
+        this.editable = editable;
+    }
+
+    /**
+     * Loads the whole of the given file, mapping it if it is at least
+     * {@code MAP_THRESHOLD} bytes long and reading it into the pooled heap buffer
+     * otherwise.
+     *
+     * @param file The file to load.
+     * @return A {@code Source} holding the contents of the file.
+     * @throws java.io.IOException if the file cannot be read or is too large.
+     */
+    public static Source open(File file) throws IOException {
+        try (FileInputStream fis = new FileInputStream(file);
+             FileChannel fchan = fis.getChannel()) {
+            long size = fchan.size();
+
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("File: " + file.getName() + " is too large to be lexed.");
+
+            if (size >= MAP_THRESHOLD)
+                return new Source(file.getName(), fchan.map(FileChannel.MapMode.READ_ONLY, 0, size), false, false);
+
+            // Take the pooled buffer for this thread, growing it if necessary.
+            ByteBuffer buffer = POOL.get();
+            POOL.remove();
+
+            if (buffer == null || buffer.capacity() < size)
+                buffer = ByteBuffer.allocate(Math.max((int)size, 4096));
+
+            buffer.clear();
+            buffer.limit((int)size);
+
+            while (buffer.hasRemaining())
+                if (fchan.read(buffer) < 0) break;
+
+            buffer.flip();
+            return new Source(file.getName(), buffer, true, false);
+        }
+    }
+
+    /**
+     * Wraps contents that are already in memory.
+     *
+     * @param filename The name to report for the contents.
+     * @param contents The contents of the source.
+     * @return A {@code Source} holding the given contents.
+     */
+    public static Source of(String filename, byte[] contents) {
+        return new Source(filename, ByteBuffer.wrap(contents), false, false);
+    }
+
+    /**
+     * Replaces a window of this {@code Source} with other bytes. The first edit
+     * copies the contents into a heap buffer with room to spare. An edit of a
+     * {@code Source} made by an earlier edit changes that buffer in place:
+     * only the bytes after the window are moved, and the {@code Source} edited
+     * must not be read from again. A buffer kept for its tokens is copied.
+     *
+     * @param offset The index of the first byte to replace.
+     * @param removed The number of bytes to replace.
+     * @param insert The bytes to put in their place.
+     * @return A {@code Source} holding the edited contents.
+     */
+    Source edit(int offset, int removed, byte[] insert) {
+        int edited = length - removed + insert.length;
+        int tail = length - offset - removed;
+        byte[] bytes;
+
+        if (editable && !kept && buffer.capacity() >= edited) {
+            bytes = buffer.array();
+            System.arraycopy(bytes, offset + removed, bytes, offset + insert.length, tail);
+        } else {
+            // Room for the text to grow by half before it is copied again.
+            bytes = new byte[Math.max(4096, edited + (edited >> 1))];
+            copy(0, bytes, 0, offset);
+            copy(offset + removed, bytes, offset + insert.length, tail);
+        }
+
+        System.arraycopy(insert, 0, bytes, offset, insert.length);
+
+        return new Source(filename, ByteBuffer.wrap(bytes, 0, edited), false, true);
+    }
+
+    /**
+     * @return The number of bytes in this {@code Source}.
+     */
+    public int length() { return length; }
+
+    /**
+     * Returns where every line of this {@code Source} starts. The lines are
+     * only found once a line or column is first asked for.
+     *
+     * @return The lines of this {@code Source}.
+     */
+    public synchronized LineMap lines() {
+        if (lines == null) lines = new LineMap(this);
+
+        return lines;
+    }
+
+    /**
+     * Returns the lines of this {@code Source} to something that may outlive
+     * it, such as a {@code Token}, and keeps the contents for it.
+     *
+     * @return The lines of this {@code Source}.
+     * @see #keep()
+     */
+    LineMap share() {
+        keep();
+        return lines();
+    }
+
+    /**
+     * Keeps the contents of this {@code Source} for a view of them that may
+     * outlive it: the buffer is not handed back to the pool when this is
+     * closed, and is not edited in place.
+     */
+    void keep() {
+        if (!kept) kept = true;
+    }
+
+    /**
+     * Returns the byte at the given index as an unsigned value. Sources are read
+     * as UTF-8, so a value of {@code 0x80} or more is part of a longer sequence.
+     *
+     * @param index The index of the byte, which must be less than {@code length()}.
+     * @return The byte at the index, between 0 and 255.
+     */
+    public int get(int index) {
+        return buffer.get(index) & 0xFF;
+    }
+
+    /**
+     * Finds the next line break, either {@code '\n'} or {@code '\r'}.
+     *
+     * @param from The index to start looking at.
+     * @return The index of the line break, or {@code length()} if there is none.
+     */
+    int findLineBreak(int from) {
+        return find(from, length, '\n', '\r');
+    }
+
+    /**
+     * Finds the next of either of two ASCII characters, eight bytes at a time.
+     *
+     * @param from The index to start looking at.
+     * @param to The index to stop looking at.
+     * @param a One of the characters to look for.
+     * @param b The other character to look for.
+     * @return The index of the character, or {@code to} if there is none.
+     */
+    int find(int from, int to, char a, char b) {
+        int index = from;
+
+        for (; index + 8 <= to; index += 8) {
+            long word = words.getLong(index);
+            long found = equal(word, a) | equal(word, b);
+
+            if (found != 0) return index + (Long.numberOfTrailingZeros(found) >>> 3);
+        }
+
+        for (; index < to; index++) {
+            int c = buffer.get(index);
+
+            if (c == a || c == b) return index;
+        }
+
+        return to;
+    }
+
+    /**
+     * Skips a run of spaces and tabs.
+     *
+     * @param from The index to start skipping at.
+     * @return The index of the first byte that is neither, or {@code length()}.
+     */
+    int skipBlanks(int from) {
+        int index = from;
+
+        for (; index + 8 <= length; index += 8) {
+            long word = words.getLong(index);
+            long other = ~(equal(word, ' ') | equal(word, '\t')) & HIGHS;
+
+            if (other != 0) return index + (Long.numberOfTrailingZeros(other) >>> 3);
+        }
+
+        for (; index < length; index++) {
+            int c = buffer.get(index);
+
+            if (c != ' ' && c != '\t') return index;
+        }
+
+        return length;
+    }
+
+    /**
+     * Skips a run of ASCII letters, digits, and underscores. Anything outside of
+     * ASCII ends the run so the {@code Lexer} can decide about it by itself.
+     *
+     * @param from The index to start skipping at.
+     * @return The index of the first byte that is not part of the run, or
+     *         {@code length()}.
+     */
+    int skipWord(int from) {
+        int index = from;
+
+        for (; index + 8 <= length; index += 8) {
+            long word = words.getLong(index);
+            // Only the low seven bits take part, so that adding can never carry
+            // into the next byte; bytes with the high bit set are not ASCII.
+            // Setting 0x20 folds upper case letters onto lower case ones.
+            long ascii = word & LOWS;
+            long part = (between(ascii | ONES * 0x20, 'a', 'z') |
+                         between(ascii, '0', '9') | equal(word, '_')) & ~word;
+            long other = ~part & HIGHS;
+
+            if (other != 0) return index + (Long.numberOfTrailingZeros(other) >>> 3);
+        }
+
+        for (; index < length; index++)
+            if (!CharClass.is((char)(buffer.get(index) & 0xFF), CharClass.WORD)) return index;
+
+        return length;
+    }
+
+    /**
+     * @param word Eight bytes.
+     * @param c The byte to look for.
+     * @return The high bit set in exactly the bytes of {@code word} equal to
+     *         {@code c}.
+     */
+    private static long equal(long word, char c) {
+        long x = word ^ (ONES * c);
+        return ~(((x & LOWS) + LOWS) | x | LOWS);
+    }
+
+    /**
+     * @param ascii Eight bytes, none of which has its high bit set.
+     * @param low The smallest byte in the range.
+     * @param high The largest byte in the range.
+     * @return The high bit set in exactly the bytes of {@code ascii} between
+     *         {@code low} and {@code high}.
+     */
+    private static long between(long ascii, char low, char high) {
+        long atLeastLow = ascii + ONES * (0x80 - low);
+        long aboveHigh = ascii + ONES * (0x7F - high);
+        return atLeastLow & ~aboveHigh & HIGHS;
+    }
+
+    /**
+     * Copies a window of this {@code Source} into an array.
+     *
+     * @param start The index of the first byte.
+     * @param target The array to copy into.
+     * @param offset Where in the array to start copying to.
+     * @param length The number of bytes to copy.
+     */
+    void copy(int start, byte[] target, int offset, int length) {
+        ByteBuffer window = buffer.duplicate();
+
+        window.position(start);
+        window.get(target, offset, length);
+    }
+
+    /**
+     * Feeds the whole of this {@code Source} to a digest.
+     *
+     * @param digest The digest to update.
+     */
+    void digest(MessageDigest digest) {
+        ByteBuffer window = buffer.duplicate();
+
+        window.position(0);
+        window.limit(length);
+        digest.update(window);
+    }
+
+    /**
+     * Tells whether a window of this {@code Source} is plain ASCII, in which
+     * case every byte of it is a character of its own.
+     *
+     * @param start The index of the first byte.
+     * @param length The number of bytes to check.
+     * @return Whether none of the bytes has its high bit set.
+     */
+    boolean isAscii(int start, int length) {
+        int index = start, end = start + length;
+
+        for (; index + 8 <= end; index += 8)
+            if ((words.getLong(index) & HIGHS) != 0) return false;
+
+        for (; index < end; index++)
+            if (buffer.get(index) < 0) return false;
+
+        return true;
+    }
+
+    /**
+     * Counts the characters in a window of this {@code Source}, which is the
+     * number of bytes that do not continue a UTF-8 sequence.
+     *
+     * @param start The index of the first byte.
+     * @param end The index after the last byte.
+     * @return The number of characters in the window.
+     */
+    int characters(int start, int end) {
+        int count = 0;
+
+        for (int index = start; index < end; index++)
+            if ((buffer.get(index) & 0xC0) != 0x80) count++;
+
+        return count;
+    }
+
+    /**
+     * Copies a window of this {@code Source} into a {@code String}, decoding it
+     * as UTF-8. Plain ASCII, which is most of any source, is copied over as it
+     * is without going through the decoder.
+     *
+     * @param start The index of the first byte.
+     * @param length The number of bytes to copy.
+     * @return The window as a {@code String}.
+     */
+    public String text(int start, int length) {
+        Charset charset = isAscii(start, length) ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8;
+
+        if (buffer.hasArray())
+            return new String(buffer.array(), buffer.arrayOffset() + start, length, charset);
+
+        byte[] bytes = new byte[length];
+        ByteBuffer window = buffer.duplicate();
+
+        window.position(start);
+        window.get(bytes);
+
+        return new String(bytes, charset);
+    }
+
+    /**
+     * Hands the buffer back to the pool if it came from there and nothing
+     * made from it was kept. A closed {@code Source} must not be read from
+     * again, but the tokens, text, and lines it handed out stay good.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+
+        closed = true;
+
+        if (pooled && !kept) {
+            ByteBuffer current = POOL.get();
+
+            if (current == null || current.capacity() < buffer.capacity())
+                POOL.set(buffer);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.lexer;
+
+import cherry.frontend.grammar.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A deterministic automaton that recognizes every symbol of {@code Type}, such
+ * as {@code +}, {@code <<=} or {@code ~>}. The automaton is built once from the
+ * values of {@code Type} when this class is first used, so any symbol that is
+ * added to that enum is recognized without touching the {@code Lexer}.
+ *
+ * <p>
+ * The transitions are kept in a single table with a row of 128 entries for
+ * each state, one per ASCII character, so taking a step is a single array load.
+ * The {@code Lexer} keeps stepping for as long as there is a transition and
+ * takes the longest symbol that was accepted along the way.
+ * </p>
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+final class SymbolAutomaton {
+    /** The state the automaton starts in. */
+    static final int START = 0;
+    /** Returned by {@code step} when there is no transition. */
+    static final int NONE = -1;
+    /** The length of the longest symbol, which is as far as a step can look ahead. */
+    static final int LONGEST;
+    /** The width of a row in the transition table. */
+    private static final int WIDTH = 128;
+    /** The transitions of the automaton, {@code WIDTH} entries per state. */
+    private static final int[] TRANSITIONS;
+    /** The symbol accepted by each state, {@code null} if it accepts none. */
+    private static final Type[] ACCEPTS;
+
+    /** Building the automaton from the symbols in {@code Type}. */
+    static {
+        List<int[]> rows = new ArrayList<>();
+        List<Type> accepts = new ArrayList<>();
+        int longest = 0;
+
+        rows.add(newRow());
+        accepts.add(null);
+
+        for (Type type : Type.values()) {
+            String symbol = type.toString();
+
+            if (!isSymbol(symbol)) continue;
+
+            int state = START;
+
+            for (int i = 0; i < symbol.length(); i++) {
+                int[] row = rows.get(state);
+                char c = symbol.charAt(i);
+
+                if (row[c] == NONE) {
+                    row[c] = rows.size();
+                    rows.add(newRow());
+                    accepts.add(null);
+                }
+
+                state = row[c];
+            }
+
+            accepts.set(state, type);
+            longest = Math.max(longest, symbol.length());
+        }
+
+        LONGEST = longest;
+
+        TRANSITIONS = new int[rows.size() * WIDTH];
+        ACCEPTS = accepts.toArray(new Type[0]);
+
+        for (int i = 0; i < rows.size(); i++)
+            System.arraycopy(rows.get(i), 0, TRANSITIONS, i * WIDTH, WIDTH);
+    }
+
+    /** Not to be constructed. */
+    private SymbolAutomaton() {}
+
+    /**
+     * Takes a single step in the automaton.
+     *
+     * @param state The state we are in.
+     * @param c The character we have read.
+     * @return The next state, or {@code NONE} if there is no transition.
+     */
+    static int step(int state, int c) {
+        return c >= 0 && c < WIDTH ? TRANSITIONS[state * WIDTH + c] : NONE;
+    }
+
+    /**
+     * @param state The state we are in.
+     * @return The symbol that ends at this state, {@code null} if none does.
+     */
+    static Type accepts(int state) {
+        return ACCEPTS[state];
+    }
+
+    /**
+     * Symbols are the values of {@code Type} that are written with ASCII
+     * punctuation alone, which sets them apart from keywords and literals.
+     */
+    private static boolean isSymbol(String value) {
+        if (value.isEmpty()) return false;
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c >= WIDTH || Character.isLetterOrDigit(c) || Character.isWhitespace(c))
+                return false;
+        }
+
+        return true;
+    }
+
+    /** Creates a row of the transition table with no transitions. */
+    private static int[] newRow() {
+        int[] row = new int[WIDTH];
+        Arrays.fill(row, NONE);
+        return row;
+    }
+}
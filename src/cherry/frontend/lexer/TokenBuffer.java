@@ -0,0 +1,681 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.lexer;
+
+import cherry.frontend.grammar.Token;
+import cherry.frontend.grammar.Type;
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * A compact store for all the tokens of a single file. Instead of a
+ * {@code Token} object for each token, the type, start and length of every
+ * token are kept in parallel arrays, and the name of the file is kept just the
+ * once. The text of a token is read back from the {@code Source} when it is
+ * asked for, and its line and column are found from its start in the lines of
+ * the source, so a token costs 13 bytes no matter how long it is.
+ * Identifiers also keep the id the {@code IdentifierPool} gave them, undefined
+ * tokens the code of the {@code LexicalError} they stand for, and numbers
+ * where their value is in a separate array of values, which is only as long
+ * as there are numbers that are not zero.
+ *
+ * <p>
+ * Consumers that would rather work with something that looks like a token can
+ * use a {@code Cursor}, which is a single object that moves over the buffer.
+ * </p>
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+public final class TokenBuffer implements Closeable {
+    /** The types by ordinal, so they are not copied on every lookup. */
+    private static final Type[] TYPES = Type.values();
+    /** The error codes by ordinal. */
+    private static final LexicalError.Code[] CODES = LexicalError.Code.values();
+    /** Whether each type, by ordinal, is a number. */
+    private static final boolean[] NUMBERS = new boolean[TYPES.length];
+    /** The name of the file the tokens were found in. */
+    public final String filename;
+    /** The source the tokens were found in, replaced when it is edited. */
+    private Source source;
+    /** Tells whether this buffer must close the source when it is closed. */
+    private final boolean ownsSource;
+    /** The ordinal of the type of each token. */
+    private byte[] types;
+    /** The index of the first character of each token in the source. */
+    private int[] starts;
+    /** The number of characters in each token. */
+    private int[] lengths;
+    /**
+     * The pooled id of each identifier, the ordinal of the error code of each
+     * undefined token, the index of the value of each number in
+     * {@code numbers}, and {@code -1} for other tokens and numbers of zero.
+     */
+    private int[] symbols;
+    /** The values of the numbers, the bits of a {@code double} for decimals. */
+    private long[] numbers = new long[16];
+    /** The number of values in {@code numbers}. */
+    private int numberCount = 0;
+    /** The number of values in {@code numbers} no token uses any more. */
+    private int deadNumbers = 0;
+    /** The number of tokens in this buffer. */
+    private int size = 0;
+
+    /** Finding which types are numbers. */
+    static {
+        for (Type type : EnumSet.of(Type.REAL, Type.HEX, Type.OCT, Type.BIN, Type.DEC, Type.WIDE, Type.SKINNY))
+            NUMBERS[type.ordinal()] = true;
+    }
+
+    /**
+     * Constructs a new, empty {@code TokenBuffer} for the tokens of a source.
+     *
+     * @param source The source the tokens will be found in.
+     * @param ownsSource Whether this buffer must close the source.
+     */
+    TokenBuffer(Source source, boolean ownsSource) {
+        // A token every five characters is a fair first guess.
+        this(source, ownsSource, Math.max(16, source.length() / 5));
+    }
+
+    /**
+     * Constructs a new, empty {@code TokenBuffer} with room for the given
+     * number of tokens.
+     *
+     * @param source The source the tokens will be found in.
+     * @param ownsSource Whether this buffer must close the source.
+     * @param capacity The number of tokens to make room for.
+     */
+    TokenBuffer(Source source, boolean ownsSource, int capacity) {
+        this.filename = source.filename;
+        this.source = source;
+        this.ownsSource = ownsSource;
+        types = new byte[capacity];
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        symbols = new int[capacity];
+    }
+
+    /**
+     * Constructs a {@code TokenBuffer} over tokens that were lexed before.
+     *
+     * @param source The source the tokens were found in.
+     * @param ownsSource Whether this buffer must close the source.
+     * @param types The ordinal of the type of each token.
+     * @param starts The index of the first character of each token.
+     * @param lengths The number of characters in each token.
+     * @param symbols The pooled id, error code or value index of each token.
+     * @param numbers The values of the numbers.
+     */
+    private TokenBuffer(Source source, boolean ownsSource, byte[] types, int[] starts, int[] lengths, int[] symbols,
+                        long[] numbers) {
+        this.filename = source.filename;
+        this.source = source;
+        this.ownsSource = ownsSource;
+        this.types = types;
+        this.starts = starts;
+        this.lengths = lengths;
+        this.symbols = symbols;
+        this.numbers = numbers;
+        this.numberCount = numbers.length;
+        this.size = types.length;
+    }
+
+    /**
+     * Reads back the tokens that {@code write(ByteBuffer)} wrote for the same
+     * source. Pooled ids only mean something to the run that gave them out, so
+     * identifiers are pooled again.
+     *
+     * @param source The source the tokens were found in.
+     * @param ownsSource Whether the buffer must close the source.
+     * @param data The written tokens, read from its position on.
+     * @return The tokens.
+     * @throws java.lang.IllegalStateException if the data does not hold tokens
+     *      of the source.
+     */
+    static TokenBuffer read(Source source, boolean ownsSource, ByteBuffer data) {
+        int size = data.getInt();
+
+        if (size <= 0 || size > data.remaining() / 13)
+            throw new IllegalStateException("Token count: " + size);
+
+        byte[] types = new byte[size];
+        int[] starts = new int[size];
+        int[] lengths = new int[size];
+        int[] symbols = new int[size];
+
+        data.get(types);
+        data.asIntBuffer().get(starts);
+        data.position(data.position() + size * 4);
+        data.asIntBuffer().get(lengths);
+        data.position(data.position() + size * 4);
+        data.asIntBuffer().get(symbols);
+        data.position(data.position() + size * 4);
+
+        int count = data.getInt();
+
+        if (count < 0 || count > size || count > data.remaining() / 8)
+            throw new IllegalStateException("Number count: " + count);
+
+        long[] numbers = new long[count];
+
+        data.asLongBuffer().get(numbers);
+        data.position(data.position() + count * 8);
+
+        // Every token is checked before any identifier is pooled.
+        for (int i = 0; i < size; i++)
+            if (!valid(source, types[i], starts[i], lengths[i], symbols[i], count))
+                throw new IllegalStateException("Token: " + i + " of " + size);
+
+        if (types[size - 1] != Type.EOTS.ordinal())
+            throw new IllegalStateException("The tokens do not end with the end of the stream.");
+
+        for (int i = 0; i < size; i++)
+            if (types[i] == Type.ID.ordinal())
+                symbols[i] = IdentifierPool.intern(source, starts[i], lengths[i]);
+
+        return new TokenBuffer(source, ownsSource, types, starts, lengths, symbols, numbers);
+    }
+
+    /**
+     * Tells whether a token read back from {@code write} could have been made
+     * by lexing the source: its type is known, it lies inside the source, and
+     * its symbol is {@code -1} or points at a value or an error code.
+     *
+     * @param source The source the token is in.
+     * @param type The ordinal of the type of the token.
+     * @param start The index of the first character of the token.
+     * @param length The number of characters in the token.
+     * @param symbol The symbol of the token as it was written.
+     * @param count The number of values of numbers.
+     * @return Whether the token is valid.
+     */
+    private static boolean valid(Source source, int type, int start, int length, int symbol, int count) {
+        if (type < 0 || type >= TYPES.length || start < 0 || length < 0 || length > source.length() - start)
+            return false;
+
+        if (NUMBERS[type]) return symbol >= -1 && symbol < count;
+
+        if (type == Type.UNDEF.ordinal()) return symbol >= -1 && symbol < CODES.length;
+
+        return symbol == -1;
+    }
+
+    /**
+     * @return The number of bytes {@code write(ByteBuffer)} needs.
+     */
+    int bytes() {
+        return 8 + size * 13 + numberCount * 8;
+    }
+
+    /**
+     * Writes the tokens in this buffer, leaving out the text, which is read
+     * back from the source.
+     *
+     * @param data Where to write the tokens, with {@code bytes()} remaining.
+     */
+    void write(ByteBuffer data) {
+        data.putInt(size);
+        data.put(types, 0, size);
+
+        for (int i = 0; i < size; i++) data.putInt(starts[i]);
+        for (int i = 0; i < size; i++) data.putInt(lengths[i]);
+        for (int i = 0; i < size; i++) data.putInt(types[i] == Type.ID.ordinal() ? -1 : symbols[i]);
+
+        data.putInt(numberCount);
+
+        for (int i = 0; i < numberCount; i++) data.putLong(numbers[i]);
+    }
+
+    /**
+     * Adds a token to the end of this buffer.
+     *
+     * @param type The type of the token.
+     * @param start The index of the first character of the token.
+     * @param length The number of characters in the token.
+     * @param symbol The pooled id of the identifier, or the ordinal of the error
+     *      code of an undefined token, {@code -1} for any other token.
+     * @param number The value of a number, the bits of a {@code double} for a
+     *      decimal, {@code 0} for any other token.
+     */
+    void add(Type type, int start, int length, int symbol, long number) {
+        if (size == types.length) grow();
+
+        types[size] = (byte)type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        symbols[size] = number == 0 ? symbol : addNumber(number);
+        size++;
+    }
+
+    /**
+     * Adds a token from another buffer to the end of this one, moved by the
+     * given number of characters.
+     *
+     * @param from The buffer the token is in.
+     * @param index The index of the token in that buffer.
+     * @param shift How many characters to move the token by.
+     */
+    void add(TokenBuffer from, int index, int shift) {
+        if (size == types.length) grow();
+
+        set(size++, from, index, shift);
+    }
+
+    /**
+     * Replaces a run of tokens with the tokens of another buffer, after the
+     * source they were found in was edited. Only the tokens after the run are
+     * moved, in memory and by the given number of characters; the tokens
+     * before it are left as they are.
+     *
+     * @param from The index of the first token to replace.
+     * @param to The index after the last token to replace.
+     * @param with The tokens to put in their place, all of them.
+     * @param shift How many characters the tokens after the run moved by.
+     * @param edited The edited source, which this buffer reads from now on.
+     */
+    void splice(int from, int to, TokenBuffer with, int shift, Source edited) {
+        int moved = with.size - (to - from);
+
+        for (int i = from; i < to; i++)
+            if (NUMBERS[types[i]] && symbols[i] >= 0) deadNumbers++;
+
+        while (size + moved > types.length) grow();
+
+        System.arraycopy(types, to, types, to + moved, size - to);
+        System.arraycopy(starts, to, starts, to + moved, size - to);
+        System.arraycopy(lengths, to, lengths, to + moved, size - to);
+        System.arraycopy(symbols, to, symbols, to + moved, size - to);
+        size += moved;
+
+        if (shift != 0)
+            for (int i = to + moved; i < size; i++) starts[i] += shift;
+
+        for (int i = 0; i < with.size; i++) set(from + i, with, i, 0);
+
+        // Values are only thrown away once most of them are no longer used.
+        if (deadNumbers > 16 && deadNumbers > numberCount / 2) compactNumbers();
+
+        if (ownsSource) source.close();
+
+        source = edited;
+    }
+
+    /** Copies a token from another buffer over the token at the given index. */
+    private void set(int at, TokenBuffer from, int index, int shift) {
+        types[at] = from.types[index];
+        starts[at] = from.starts[index] + shift;
+        lengths[at] = from.lengths[index];
+        symbols[at] = NUMBERS[types[at]] && from.symbols[index] >= 0
+                ? addNumber(from.numbers[from.symbols[index]])
+                : from.symbols[index];
+    }
+
+    /** Keeps only the values of numbers some token still uses. */
+    private void compactNumbers() {
+        long[] kept = new long[Math.max(16, numberCount - deadNumbers)];
+        int count = 0;
+
+        for (int i = 0; i < size; i++) {
+            if (NUMBERS[types[i]] && symbols[i] >= 0) {
+                kept[count] = numbers[symbols[i]];
+                symbols[i] = count++;
+            }
+        }
+
+        numbers = kept;
+        numberCount = count;
+        deadNumbers = 0;
+    }
+
+    /** Keeps the value of a number, returning where it was kept. */
+    private int addNumber(long number) {
+        if (numberCount == numbers.length) numbers = Arrays.copyOf(numbers, numberCount * 2);
+
+        numbers[numberCount] = number;
+        return numberCount++;
+    }
+
+    /**
+     * Puts every identifier that was lexed without being pooled in the
+     * {@code IdentifierPool}.
+     */
+    void intern() {
+        for (int i = 0; i < size; i++)
+            if (types[i] == Type.ID.ordinal() && symbols[i] < 0)
+                symbols[i] = IdentifierPool.intern(source, starts[i], lengths[i]);
+    }
+
+    /**
+     * Drops every token from the given index on.
+     *
+     * @param size The number of tokens to keep.
+     */
+    void truncate(int size) {
+        this.size = Math.min(this.size, size);
+    }
+
+    /**
+     * @return The source the tokens were found in.
+     */
+    Source source() { return source; }
+
+    /**
+     * Finds the last token that ends before the given index of the source.
+     *
+     * @param offset The index in the source.
+     * @return The index of the token, or {@code -1} if no token ends before it.
+     */
+    int lastBefore(int offset) {
+        int low = 0, high = size - 1, result = -1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+
+            if (starts[middle] + lengths[middle] < offset) {
+                result = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The number of tokens in this buffer.
+     */
+    public int size() { return size; }
+
+    /**
+     * @param index The index of the token.
+     * @return The type of the token.
+     */
+    public Type type(int index) { return TYPES[types[check(index)]]; }
+
+    /**
+     * @param index The index of the token.
+     * @return The index of the first character of the token in the source.
+     */
+    public int start(int index) { return starts[check(index)]; }
+
+    /**
+     * @param index The index of the token.
+     * @return The number of characters in the token.
+     */
+    public int length(int index) { return lengths[check(index)]; }
+
+    /**
+     * @param index The index of the token.
+     * @return The line the token was found on.
+     */
+    public int line(int index) { return source.lines().line(starts[check(index)]); }
+
+    /**
+     * @param index The index of the token.
+     * @return The pooled id of the identifier, {@code -1} if it is not one.
+     */
+    public int symbolId(int index) { return types[check(index)] == Type.ID.ordinal() ? symbols[index] : -1; }
+
+    /**
+     * @param index The index of the token.
+     * @return The value of an integer number, {@code 0} for any other token.
+     * @see cherry.frontend.grammar.Token#longValue()
+     */
+    public long longValue(int index) {
+        return types[check(index)] == Type.DEC.ordinal() ? 0 : number(index);
+    }
+
+    /**
+     * @param index The index of the token.
+     * @return The value of a decimal number, {@code 0} for any other token.
+     */
+    public double doubleValue(int index) {
+        return types[check(index)] == Type.DEC.ordinal() ? Double.longBitsToDouble(number(index)) : 0;
+    }
+
+    /** The value of a number as it is kept, {@code 0} for any other token. */
+    private long number(int index) {
+        return NUMBERS[types[index]] && symbols[index] >= 0 ? numbers[symbols[index]] : 0;
+    }
+
+    /**
+     * @param index The index of the token.
+     * @return The kind of mistake an undefined token stands for, {@code null}
+     *      for any other token.
+     */
+    public LexicalError.Code error(int index) {
+        return types[check(index)] == Type.UNDEF.ordinal() && symbols[index] >= 0 ? CODES[symbols[index]] : null;
+    }
+
+    /**
+     * Collects the mistakes found while lexing, one for each undefined token.
+     *
+     * @return The mistakes, in the order they appear in the source.
+     */
+    public List<LexicalError> errors() {
+        List<LexicalError> errors = new ArrayList<>();
+
+        for (int i = 0; i < size; i++) {
+            LexicalError.Code code = error(i);
+
+            if (code != null)
+                errors.add(new LexicalError(code, filename, source.share(), starts[i], lengths[i]));
+        }
+
+        return errors;
+    }
+
+    /**
+     * @param index The index of the token.
+     * @return The column in the line the token was found on.
+     */
+    public int column(int index) { return source.lines().column(starts[check(index)]); }
+
+    /**
+     * @param index The index of the token.
+     * @return The lexeme of the token.
+     */
+    public String text(int index) {
+        check(index);
+
+        if (symbolId(index) >= 0) return IdentifierPool.name(symbols[index]);
+
+        return Lexer.lexeme(source, TYPES[types[index]], starts[index], lengths[index]);
+    }
+
+    /**
+     * @param index The index of the token.
+     * @return A {@code Token} with the same data as the token at the index,
+     *      which keeps the contents of the source for itself.
+     */
+    public Token toToken(int index) {
+        return new Token(type(index), text(index), filename, source.share(), starts[index], symbolId(index),
+                         number(index));
+    }
+
+    /**
+     * @return A new {@code Cursor} placed before the first token.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * @return A new {@code TokenStream} over the tokens in this buffer, which
+     *      can look ahead as far as it likes.
+     */
+    public TokenStream stream() {
+        return new Stream();
+    }
+
+    /**
+     * Closes the source of the tokens if this buffer was given it, after which
+     * the text of the tokens can no longer be read.
+     */
+    @Override
+    public void close() {
+        if (ownsSource) source.close();
+    }
+
+    /** Makes sure the index is that of a token in this buffer. */
+    private int check(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Token: " + index + " of " + size);
+
+        return index;
+    }
+
+    /** Doubles the room in this buffer. */
+    private void grow() {
+        int capacity = types.length * 2;
+
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        symbols = Arrays.copyOf(symbols, capacity);
+    }
+
+    /**
+     * A single object that moves over the tokens of the buffer and reads the
+     * token it is on, like a {@code Token} would.
+     */
+    public final class Cursor {
+        /** The index of the token the cursor is on. */
+        private int index = -1;
+
+        /**
+         * Moves to the next token.
+         *
+         * @return Whether there was a next token to move to.
+         */
+        public boolean next() {
+            if (index + 1 >= size) return false;
+
+            index++;
+            return true;
+        }
+
+        /**
+         * Moves to the given token.
+         *
+         * @param index The index of the token.
+         * @return This cursor.
+         */
+        public Cursor at(int index) {
+            this.index = check(index);
+            return this;
+        }
+
+        /** @return The index of the token the cursor is on. */
+        public int index() { return index; }
+
+        /** @return The type of the token. */
+        public Type type() { return TokenBuffer.this.type(index); }
+
+        /** @return The index of the first character of the token. */
+        public int start() { return TokenBuffer.this.start(index); }
+
+        /** @return The number of characters in the token. */
+        public int length() { return TokenBuffer.this.length(index); }
+
+        /** @return The pooled id of the identifier, {@code -1} if it is not one. */
+        public int symbolId() { return TokenBuffer.this.symbolId(index); }
+
+        /** @return The value of an integer number, {@code 0} if it is not one. */
+        public long longValue() { return TokenBuffer.this.longValue(index); }
+
+        /** @return The value of a decimal number, {@code 0} if it is not one. */
+        public double doubleValue() { return TokenBuffer.this.doubleValue(index); }
+
+        /** @return The kind of mistake an undefined token stands for, if any. */
+        public LexicalError.Code error() { return TokenBuffer.this.error(index); }
+
+        /** @return The line the token was found on. */
+        public int line() { return TokenBuffer.this.line(index); }
+
+        /** @return The column the token was found at. */
+        public int column() { return TokenBuffer.this.column(index); }
+
+        /** @return The lexeme of the token. */
+        public String text() { return TokenBuffer.this.text(index); }
+
+        /** @return A {@code Token} with the same data as this one. */
+        public Token toToken() { return TokenBuffer.this.toToken(index); }
+    }
+
+    /**
+     * A {@code TokenStream} that hands out the tokens of the buffer in order.
+     * The buffer must end with the end of the stream.
+     */
+    private final class Stream implements TokenStream {
+        /** The index of the next token. */
+        private int head = 0;
+        /** Where the stream was marked, {@code -1} if it is not. */
+        private int marked = -1;
+
+        /** Inherited from {@code TokenStream}. */
+        @Override
+        public Token next() {
+            Token token = peek(0);
+
+            // The end of the stream is never consumed.
+            if (head < size - 1) head++;
+
+            return token;
+        }
+
+        /** Inherited from {@code TokenStream}. */
+        @Override
+        public Token peek(int k) {
+            return toToken((int)Math.min((long)head + k, size - 1));
+        }
+
+        /** Inherited from {@code TokenStream}. */
+        @Override
+        public void mark() {
+            marked = head;
+        }
+
+        /** Inherited from {@code TokenStream}. */
+        @Override
+        public void reset() {
+            if (marked < 0) throw new IllegalStateException("The stream has not been marked.");
+
+            head = marked;
+            marked = -1;
+        }
+
+        /** Inherited from {@code TokenStream}. */
+        @Override
+        public void release() {
+            marked = -1;
+        }
+    }
+}
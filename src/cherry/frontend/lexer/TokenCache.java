@@ -0,0 +1,413 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.lexer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the tokens of every file that has been lexed in a directory, so that a
+ * file that has not changed since is never lexed again. A file is found by the
+ * SHA-256 of its contents together with the version of the lexer, so an edit
+ * to the file or to the lexer simply misses; no entry is ever stale.
+ *
+ * <p>
+ * An entry holds a {@code TokenBuffer} without its text, 13 bytes a token,
+ * and is mapped straight into memory when it is read. Every entry that is read
+ * or written is touched, and once the directory holds more than its limit the
+ * entries that were touched the longest time ago are deleted.
+ * </p>
+ *
+ * <p>
+ * The compiler keeps its cache in the directory named by the
+ * {@code cherry.cache.dir} system property, or in {@code cherry/tokens} under
+ * the cache directory of the user, and keeps at most the bytes named by
+ * {@code cherry.cache.limit}, which may end in {@code K}, {@code M}, or
+ * {@code G}.
+ * </p>
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+public final class TokenCache {
+    /**
+     * The version of the tokens the lexer makes, which must change whenever the
+     * lexer would lex any file differently.
+     */
+    static final int VERSION = 6;
+    /** The first four bytes of every entry, {@code "CHTK"}. */
+    private static final int MAGIC = 0x4348544B;
+    /** The bytes an entry holds before its tokens. */
+    private static final int HEADER = 12;
+    /** The ending of the name of every entry. */
+    private static final String EXTENSION = ".tok";
+    /** The system property naming the directory the compiler keeps its tokens in. */
+    public static final String DIRECTORY_PROPERTY = "cherry.cache.dir";
+    /** The system property holding the most bytes the compiler keeps in the directory. */
+    public static final String LIMIT_PROPERTY = "cherry.cache.limit";
+    /** The most bytes the compiler keeps in the directory by default. */
+    public static final long LIMIT = 256L << 20;
+    /** The number of locks the entries are spread over. */
+    private static final int STRIPES = 64;
+    /** The cache used by the compiler, made the first time it is asked for. */
+    private static TokenCache shared;
+    /** The directory the entries are kept in. */
+    private final Path directory;
+    /** The most bytes the entries may take up. */
+    private final long limit;
+    /** The bytes the entries take up. */
+    private final AtomicLong bytes = new AtomicLong();
+    /** The locks an entry is measured and replaced or deleted under, by its hash. */
+    private final Object[] locks = new Object[STRIPES];
+    /** The number of files whose tokens were found. */
+    private final LongAdder hits = new LongAdder();
+    /** The number of files that had to be lexed. */
+    private final LongAdder misses = new LongAdder();
+    /** The number of entries deleted to stay under the limit. */
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Opens the cache in the given directory, creating it if it does not exist.
+     *
+     * @param directory The directory to keep the entries in.
+     * @param limit The most bytes the entries may take up.
+     * @throws java.io.IOException if the directory could not be created or read.
+     */
+    public TokenCache(Path directory, long limit) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        this.limit = limit;
+
+        for (int i = 0; i < STRIPES; i++) locks[i] = new Object();
+
+        for (Path entry : entries())
+            bytes.addAndGet(Files.size(entry));
+    }
+
+    /**
+     * @return The cache that the compiler shares, in the directory and with the
+     *      limit its system properties name.
+     * @throws java.io.IOException if the directory could not be created or read.
+     */
+    public static synchronized TokenCache shared() throws IOException {
+        if (shared == null) shared = new TokenCache(defaultDirectory(), defaultLimit());
+
+        return shared;
+    }
+
+    /**
+     * Finds the directory the compiler keeps its tokens in: the one named by
+     * {@code DIRECTORY_PROPERTY}, or else {@code cherry/tokens} in the cache
+     * directory of the user, which is {@code XDG_CACHE_HOME}, the local
+     * application data on Windows, or {@code .cache} in the home directory.
+     *
+     * @return The directory the compiler keeps its tokens in.
+     */
+    static Path defaultDirectory() {
+        String named = System.getProperty(DIRECTORY_PROPERTY);
+
+        if (named != null && !named.isEmpty()) return Paths.get(named);
+
+        String base = System.getenv("XDG_CACHE_HOME");
+
+        if (base == null || base.isEmpty()) base = System.getenv("LOCALAPPDATA");
+
+        Path root = base == null || base.isEmpty()
+                ? Paths.get(System.getProperty("user.home"), ".cache")
+                : Paths.get(base);
+
+        return root.resolve("cherry").resolve("tokens");
+    }
+
+    /**
+     * Reads the most bytes the compiler keeps from {@code LIMIT_PROPERTY},
+     * a number of bytes that may end in {@code K}, {@code M}, or {@code G}.
+     * A limit that cannot be read is warned about and {@code LIMIT} used.
+     *
+     * @return The most bytes the compiler keeps in its directory.
+     */
+    static long defaultLimit() {
+        String named = System.getProperty(LIMIT_PROPERTY);
+
+        if (named == null || named.trim().isEmpty()) return LIMIT;
+
+        String digits = named.trim().toUpperCase();
+        int shift = "KMG".indexOf(digits.charAt(digits.length() - 1)) + 1;
+
+        if (shift > 0) digits = digits.substring(0, digits.length() - 1);
+
+        try {
+            long limit = Long.parseLong(digits.trim());
+
+            if (limit >= 0 && limit <= Long.MAX_VALUE >> shift * 10) return limit << shift * 10;
+        } catch (NumberFormatException ex) {
+            // Warned about below.
+        }
+
+        Logger.getLogger(TokenCache.class.getName()).log(Level.WARNING, "Not a cache limit: {0}", named);
+        return LIMIT;
+    }
+
+    /**
+     * Finds the tokens of a file, lexing it and keeping its tokens only if they
+     * are not in the cache yet.
+     *
+     * @param file The file to find the tokens of.
+     * @return The tokens of the file, which close the file when closed.
+     * @throws Exception if the file could not be read or lexed.
+     */
+    public TokenBuffer tokenize(File file) throws Exception {
+        Source source = Source.open(file);
+
+        try {
+            Path entry = directory.resolve(key(source) + EXTENSION);
+            TokenBuffer tokens = load(source, entry);
+
+            if (tokens != null) {
+                hits.increment();
+                return tokens;
+            }
+
+            misses.increment();
+
+            try (Lexer lexer = Lexer.acquire(source, true, 0)) {
+                tokens = lexer.tokenize();
+            }
+
+            store(source, tokens, entry);
+
+            return tokens;
+        } catch (Exception ex) {
+            source.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * @return The number of files whose tokens were found in the cache.
+     */
+    public long hits() { return hits.sum(); }
+
+    /**
+     * @return The number of files that had to be lexed.
+     */
+    public long misses() { return misses.sum(); }
+
+    /**
+     * @return The number of entries deleted to stay under the limit.
+     */
+    public long evictions() { return evictions.sum(); }
+
+    /**
+     * @return The bytes the entries take up.
+     */
+    public long bytes() { return bytes.get(); }
+
+    /**
+     * @return The most bytes the entries may take up.
+     */
+    public long limit() { return limit; }
+
+    /**
+     * @return The directory the entries are kept in.
+     */
+    public Path directory() { return directory; }
+
+    /**
+     * Names the entry of a source after the SHA-256 of its contents and the
+     * version of the lexer.
+     */
+    private static String key(Source source) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        StringBuilder key = new StringBuilder(72);
+
+        source.digest(digest);
+
+        for (byte b : digest.digest())
+            key.append(Character.forDigit(b >> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+
+        return key.append('-').append(VERSION).toString();
+    }
+
+    /**
+     * Reads the tokens of a source from its entry.
+     *
+     * @return The tokens, or {@code null} if there is no entry or it is broken,
+     *      in which case it is deleted.
+     */
+    private TokenBuffer load(Source source, Path entry) {
+        if (!Files.isRegularFile(entry)) return null;
+
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (data.remaining() < HEADER || data.getInt() != MAGIC || data.getInt() != VERSION
+                    || data.getInt() != source.length())
+                throw new IllegalStateException("Not an entry for this source.");
+
+            TokenBuffer tokens = TokenBuffer.read(source, true, data);
+
+            touch(entry);
+            return tokens;
+        } catch (IOException | RuntimeException ex) {
+            // Whatever is wrong with it, the file is lexed and the entry made again.
+            delete(entry);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the tokens of a source to its entry. Failing to is not a reason
+     * to fail lexing, so it is only logged.
+     */
+    private void store(Source source, TokenBuffer tokens, Path entry) {
+        ByteBuffer data = ByteBuffer.allocate(HEADER + tokens.bytes());
+
+        data.putInt(MAGIC).putInt(VERSION).putInt(source.length());
+        tokens.write(data);
+        data.flip();
+
+        Path temporary = null;
+
+        try {
+            // Written to the side first, so no one ever reads half an entry.
+            temporary = Files.createTempFile(directory, "tokens", ".tmp");
+
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (data.hasRemaining()) channel.write(data);
+            }
+
+            // The entry it replaces is measured under the same lock it is deleted under.
+            synchronized (lock(entry)) {
+                long replaced = Files.isRegularFile(entry) ? Files.size(entry) : 0;
+
+                try {
+                    Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException ex) {
+                    Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING);
+                }
+
+                bytes.addAndGet(HEADER + tokens.bytes() - replaced);
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(TokenCache.class.getName()).log(Level.WARNING, ex.getMessage(), ex);
+
+            if (temporary != null) delete(temporary);
+        }
+
+        evict();
+    }
+
+    /**
+     * Deletes the entries touched the longest time ago until the entries fit
+     * under the limit.
+     */
+    private synchronized void evict() {
+        if (bytes.get() <= limit) return;
+
+        List<Path> entries;
+
+        try {
+            entries = entries();
+        } catch (IOException ex) {
+            Logger.getLogger(TokenCache.class.getName()).log(Level.WARNING, ex.getMessage(), ex);
+            return;
+        }
+
+        entries.sort((a, b) -> lastTouched(a).compareTo(lastTouched(b)));
+
+        for (int i = 0; i < entries.size() && bytes.get() > limit; i++)
+            if (delete(entries.get(i))) evictions.increment();
+    }
+
+    /** Lists every entry in the directory. */
+    private List<Path> entries() throws IOException {
+        List<Path> entries = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path entry : stream) entries.add(entry);
+        }
+
+        return entries;
+    }
+
+    /** Marks an entry as the most recently used. */
+    private static void touch(Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ex) {
+            // Only makes the entry more likely to be evicted.
+        }
+    }
+
+    /***/
+    private static FileTime lastTouched(Path entry) {
+        try {
+            return Files.getLastModifiedTime(entry);
+        } catch (IOException ex) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /** Deletes an entry, telling whether it was there to delete. */
+    private boolean delete(Path entry) {
+        synchronized (lock(entry)) {
+            try {
+                long size = Files.size(entry);
+
+                if (!Files.deleteIfExists(entry)) return false;
+
+                if (entry.toString().endsWith(EXTENSION)) bytes.addAndGet(-size);
+
+                return true;
+            } catch (IOException ex) {
+                return false;
+            }
+        }
+    }
+
+    /***/
+    private Object lock(Path entry) {
+        return locks[(entry.getFileName().hashCode() & 0x7FFFFFFF) % STRIPES];
+    }
+}
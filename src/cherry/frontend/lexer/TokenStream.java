@@ -0,0 +1,81 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.lexer;
+
+import cherry.frontend.grammar.Token;
+
+/**
+ * A stream of {@code Token}s that the {@code Parser} pulls from as it needs
+ * them, rather than waiting for a whole file to be lexed first. Only a small,
+ * fixed number of tokens are kept around at once, so a stream costs the same
+ * whether the file is ten lines long or ten million.
+ *
+ * <p>
+ * The last token of every stream is {@code Type.EOTS}, and once it has been
+ * reached {@code next()} keeps on returning it.
+ * </p>
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+public interface TokenStream {
+    /**
+     * Consumes and returns the next token in the stream.
+     *
+     * @return The next token.
+     * @throws Exception if the next token could not be lexed.
+     */
+    Token next() throws Exception;
+
+    /**
+     * Looks ahead in the stream without consuming anything.
+     *
+     * @param k How far to look ahead, {@code 0} being the token {@code next()}
+     *      would return.
+     * @return The token {@code k} places ahead.
+     * @throws Exception if the token could not be lexed.
+     * @throws java.lang.IllegalStateException if {@code k} is further than the
+     *      stream is able to keep.
+     */
+    Token peek(int k) throws Exception;
+
+    /**
+     * Marks the current place in the stream so that it can be returned to with
+     * {@code reset()}. Any previous mark is dropped.
+     */
+    void mark();
+
+    /**
+     * Returns to the place in the stream that was last marked and drops the
+     * mark.
+     *
+     * @throws java.lang.IllegalStateException if there is no mark.
+     */
+    void reset();
+
+    /**
+     * Drops the mark without returning to it, freeing the tokens it held on to.
+     */
+    void release();
+}
@@ -0,0 +1,184 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.parser;
+
+import cherry.frontend.grammar.NonTerminal;
+import cherry.frontend.grammar.Terminal;
+import cherry.frontend.grammar.Token;
+import java.util.Arrays;
+
+/**
+ * A node of a shared packed parse forest. Each node is a symbol of the grammar
+ * along with the tokens it was parsed from, and there is only ever one node
+ * for the same symbol over the same tokens no matter how many ways it was
+ * parsed. Every way is kept as an alternative of the node, packed with the
+ * production it was reduced by and the nodes of its body, so an ambiguous
+ * parse costs a node with more than one alternative instead of another tree.
+ *
+ * <p>
+ * Symbols are numbered the same way as the columns of the {@code ParseTable}:
+ * the ordinal of a {@code Terminal}, or the number of terminals plus the
+ * ordinal of a {@code NonTerminal}. Terminals are the leaves of the forest and
+ * hold their {@code Token}.
+ * </p>
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+public final class ForestNode {
+    /** The number of terminals, where the nonterminals begin. */
+    private static final int TERMINALS = Terminal.values().length;
+    /** The nodes of a body without any symbols. */
+    private static final ForestNode[] EMPTY = {};
+
+    /** The symbol of this node. */
+    public final int symbol;
+    /** The index of the first token of this node. */
+    public final int start;
+    /** The index of the token after the last of this node. */
+    public final int end;
+    /** The token of a terminal, null for a nonterminal. */
+    public final Token token;
+    /** The production of each alternative. */
+    private int[] productions = {};
+    /** The nodes of the body of each alternative. */
+    private ForestNode[][] children = {};
+    /** The number of alternatives. */
+    private int count;
+
+    /**
+     * Constructs a new leaf for a token.
+     *
+     * @param token The token.
+     * @param terminal The ordinal of the terminal of the token.
+     * @param index The index of the token.
+     */
+    ForestNode(Token token, int terminal, int index) {
+        this.symbol = terminal;
+        this.start = index;
+        this.end = index + 1;
+        this.token = token;
+    }
+
+    /**
+     * Constructs a new node for a rule, without any alternatives yet.
+     *
+     * @param rule The ordinal of the rule.
+     * @param start The index of the first token.
+     * @param end The index of the token after the last.
+     */
+    ForestNode(int rule, int start, int end) {
+        this.symbol = TERMINALS + rule;
+        this.start = start;
+        this.end = end;
+        this.token = null;
+    }
+
+    /**
+     * Adds a way this node was parsed, unless it already has it.
+     *
+     * @param production The production it was reduced by.
+     * @param body The nodes of the body of the production.
+     */
+    void pack(int production, ForestNode[] body) {
+        search:
+        for (int i = 0; i < count; i++) {
+            if (productions[i] != production || children[i].length != body.length) continue;
+
+            for (int j = 0; j < body.length; j++)
+                if (children[i][j] != body[j]) continue search;
+
+            return;
+        }
+
+        if (count == productions.length) {
+            productions = Arrays.copyOf(productions, Math.max(1, count * 2));
+            children = Arrays.copyOf(children, productions.length);
+        }
+
+        productions[count] = production;
+        children[count++] = body.length == 0 ? EMPTY : body;
+    }
+
+    /**
+     * @return Whether this node is a leaf.
+     */
+    public boolean isTerminal() {
+        return token != null;
+    }
+
+    /**
+     * @return The terminal of a leaf, or null for a rule.
+     */
+    public Terminal terminal() {
+        return symbol < TERMINALS ? Terminal.values()[symbol] : null;
+    }
+
+    /**
+     * @return The rule of this node, or null for a leaf.
+     */
+    public NonTerminal rule() {
+        return symbol < TERMINALS ? null : NonTerminal.get(symbol - TERMINALS);
+    }
+
+    /**
+     * @return The number of ways this node was parsed, none for a leaf.
+     */
+    public int alternatives() {
+        return count;
+    }
+
+    /**
+     * @return Whether this node was parsed in more than one way.
+     */
+    public boolean isAmbiguous() {
+        return count > 1;
+    }
+
+    /**
+     * @param alternative Which way this node was parsed.
+     * @return The production it was reduced by, as numbered by the
+     *      {@code ParseTable}.
+     */
+    public int production(int alternative) {
+        return productions[alternative];
+    }
+
+    /**
+     * @param alternative Which way this node was parsed.
+     * @return The number of nodes in its body.
+     */
+    public int size(int alternative) {
+        return children[alternative].length;
+    }
+
+    /**
+     * @param alternative Which way this node was parsed.
+     * @param index Which node of its body to get.
+     * @return The node of the body.
+     */
+    public ForestNode child(int alternative, int index) {
+        return children[alternative][index];
+    }
+}
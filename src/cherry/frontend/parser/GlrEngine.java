@@ -0,0 +1,498 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.parser;
+
+import cherry.frontend.grammar.ParseTable;
+import cherry.frontend.grammar.Terminal;
+import cherry.frontend.grammar.Token;
+import cherry.frontend.grammar.Type;
+import cherry.frontend.lexer.TokenStream;
+import cherry.util.exception.CompilerExceptionHandler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A GLR parser driven by a {@code ParseTable}, building a shared packed parse
+ * forest out of {@code ForestNode}s.
+ *
+ * <p>
+ * For as long as the table has a single action for every token, this is a
+ * plain LR parser over an array of states: nothing is allocated but the nodes
+ * of the forest. Once it reaches a cell of the table that forks, the array is
+ * turned into a graph structured stack and every action of the cell is
+ * followed at once, one token at a time. Stacks that reach the same state on
+ * the same token are merged, and every node of the forest over the same
+ * tokens is shared between them, so an ambiguous stretch of the input costs
+ * about as much as the ways it can be parsed instead of growing exponentially.
+ * Once only a single stack is left, the parser goes back to being a plain LR
+ * parser.
+ * </p>
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+public final class GlrEngine {
+    /** The number of terminals, where the nonterminals begin. */
+    private static final int TERMINALS = Terminal.values().length;
+    /** The ordinal of the terminal of each token type, by ordinal. */
+    private static final int[] TERMINAL_OF = new int[Type.values().length];
+
+    /** Matching token types to terminals by name; those without one are undefined. */
+    static {
+        for (Type type : Type.values()) {
+            int terminal = Terminal.UNDEF.ordinal();
+
+            for (Terminal candidate : Terminal.values())
+                if (candidate.name().equals(type.name())) terminal = candidate.ordinal();
+
+            TERMINAL_OF[type.ordinal()] = terminal;
+        }
+    }
+
+    /** The tables to parse with. */
+    private final ParseTable table;
+    /** The states of the plain LR stack. */
+    private int[] states = new int[64];
+    /** The node of the forest under each state of the plain LR stack. */
+    private ForestNode[] values = new ForestNode[64];
+    /** The index of the top of the plain LR stack. */
+    private int top;
+
+    /** The heads of the graph structured stack, or null while parsing plainly. */
+    private List<Node> frontier;
+    /** The head in each state, for the token being parsed. */
+    private Node[] heads;
+    /** The nodes of the forest made for the token being parsed, by symbol and start. */
+    private final Map<Long, ForestNode> shared = new HashMap<>();
+    /** The reductions waiting to be done for the token being parsed. */
+    private final List<Reduction> pending = new ArrayList<>();
+    /** Whether any head points at another head, through a reduction by an empty body. */
+    private boolean empties;
+    /** The node of the start rule, once the input is accepted. */
+    private ForestNode accepted;
+
+    /**
+     * Constructs a new {@code GlrEngine} for the given tables.
+     *
+     * @param table The tables to parse with.
+     */
+    public GlrEngine(ParseTable table) {
+        this.table = table;
+        this.heads = new Node[table.states()];
+    }
+
+    /**
+     * Parses a stream of tokens. A token that none of the stacks can take is
+     * reported as a syntax error, which ends the parse. An engine can parse any
+     * number of streams, one after another.
+     *
+     * @param tokens The tokens to parse.
+     * @return The node of the start rule, or null if the tokens could not be
+     *      parsed.
+     * @throws Exception if a token could not be lexed.
+     */
+    public ForestNode parse(TokenStream tokens) throws Exception {
+        Token token = tokens.next();
+        int terminal = TERMINAL_OF[token.type.ordinal()];
+        int position = 0;
+
+        top = 0;
+        states[0] = 0;
+        frontier = null;
+        accepted = null;
+
+        // A parse accepted in the middle of its reductions leaves its heads.
+        Arrays.fill(heads, null);
+
+        while (true) {
+            if (frontier == null) {
+                int action = table.action(states[top], terminal);
+
+                switch (ParseTable.kind(action)) {
+                    case ParseTable.SHIFT:
+                        push(ParseTable.target(action), new ForestNode(token, terminal, position++));
+                        token = tokens.next();
+                        terminal = TERMINAL_OF[token.type.ordinal()];
+                        continue;
+                    case ParseTable.REDUCE:
+                        if (action == ParseTable.ACCEPT) return values[top];
+
+                        reduce(ParseTable.target(action), position);
+                        continue;
+                    case ParseTable.FORK:
+                        split();
+                        break;
+                    default:
+                        return error(token);
+                }
+            }
+
+            // Every stack takes the token at once.
+            reductions(terminal, position);
+
+            if (accepted != null) return accepted;
+
+            if (!shifts(token, terminal, position++)) return error(token);
+
+            token = tokens.next();
+            terminal = TERMINAL_OF[token.type.ordinal()];
+
+            if (frontier.size() == 1) join();
+        }
+    }
+
+    /**
+     * Reduces the plain LR stack by a production.
+     *
+     * @param production The production to reduce by.
+     * @param position The index of the token being parsed.
+     */
+    private void reduce(int production, int position) {
+        int length = table.length(production);
+        int head = table.head(production);
+        ForestNode node = new ForestNode(head, length == 0 ? position : values[top - length + 1].start, position);
+
+        node.pack(production, Arrays.copyOfRange(values, top - length + 1, top + 1));
+        top -= length;
+        push(table.goTo(states[top], head), node);
+    }
+
+    /**
+     * Pushes a state onto the plain LR stack.
+     *
+     * @param state The state.
+     * @param value The node of the forest under it.
+     */
+    private void push(int state, ForestNode value) {
+        if (++top == states.length) {
+            states = Arrays.copyOf(states, top * 2);
+            values = Arrays.copyOf(values, top * 2);
+        }
+
+        states[top] = state;
+        values[top] = value;
+    }
+
+    /**
+     * Turns the plain LR stack into a graph structured stack with a single head.
+     */
+    private void split() {
+        Node below = new Node(states[0], 0);
+
+        below.depth = 0;
+
+        for (int i = 1; i <= top; i++) {
+            Node node = new Node(states[i], values[i].end);
+
+            node.depth = i;
+            node.add(below, values[i]);
+            below = node;
+        }
+
+        frontier = new ArrayList<>();
+        frontier.add(below);
+    }
+
+    /**
+     * Turns the graph structured stack back into the plain LR stack, if its
+     * only head has a single way down to what was on the plain stack when it
+     * was split.
+     */
+    private void join() {
+        int count = 0;
+
+        for (Node node = frontier.get(0); node.depth < 0; node = node.to[0], count++)
+            if (node.edges != 1) return;
+
+        Node node = frontier.get(0);
+        Node bottom = node;
+
+        for (int i = 0; i < count; i++) bottom = bottom.to[0];
+
+        // The bottom of the split stack may have been given another way down.
+        if (bottom.depth > 0 && bottom.edges != 1) return;
+
+        top = bottom.depth + count;
+
+        if (top >= states.length) {
+            states = Arrays.copyOf(states, top * 2);
+            values = Arrays.copyOf(values, top * 2);
+        }
+
+        for (int i = top; i > bottom.depth; i--, node = node.to[0]) {
+            states[i] = node.state;
+            values[i] = node.labels[0];
+        }
+
+        frontier = null;
+    }
+
+    /**
+     * Does every reduction every head can do on the token being parsed,
+     * including those of the heads the reductions make.
+     *
+     * @param terminal The ordinal of the terminal of the token.
+     * @param position The index of the token.
+     */
+    private void reductions(int terminal, int position) {
+        shared.clear();
+        pending.clear();
+        empties = false;
+
+        for (Node node : frontier) heads[node.state] = node;
+
+        for (Node node : frontier) queue(node, terminal, null);
+
+        for (int i = 0; i < pending.size(); i++) {
+            Reduction reduction = pending.get(i);
+            int length = table.length(reduction.production);
+
+            walk(reduction.node, reduction.edge, length, new ForestNode[length], reduction.production, terminal, position);
+        }
+    }
+
+    /**
+     * Shifts the token being parsed onto every head that can take it.
+     *
+     * @param token The token.
+     * @param terminal The ordinal of the terminal of the token.
+     * @param position The index of the token.
+     * @return Whether any head could take it.
+     */
+    private boolean shifts(Token token, int terminal, int position) {
+        List<Node> next = new ArrayList<>();
+        ForestNode leaf = new ForestNode(token, terminal, position);
+
+        for (Node node : frontier) heads[node.state] = null;
+
+        for (Node node : frontier) {
+            int action = table.action(node.state, terminal);
+            int count = ParseTable.kind(action) == ParseTable.FORK ? table.forks(action) : 1;
+
+            for (int i = 0; i < count; i++) {
+                int taken = count == 1 ? action : table.fork(action, i);
+
+                if (ParseTable.kind(taken) != ParseTable.SHIFT) continue;
+
+                int state = ParseTable.target(taken);
+                Node head = heads[state];
+
+                if (head == null) {
+                    head = heads[state] = new Node(state, position + 1);
+                    next.add(head);
+                }
+
+                if (!head.has(node)) head.add(node, leaf);
+            }
+        }
+
+        for (Node node : next) heads[node.state] = null;
+
+        frontier = next;
+
+        return !next.isEmpty();
+    }
+
+    /**
+     * Queues every reduction of a head on the token being parsed.
+     *
+     * @param node The head.
+     * @param terminal The ordinal of the terminal of the token.
+     * @param edge The only node the reductions may go down to first, or null
+     *      for any; reductions by an empty body are only queued when this is
+     *      null.
+     */
+    private void queue(Node node, int terminal, Node edge) {
+        int action = table.action(node.state, terminal);
+        int count = ParseTable.kind(action) == ParseTable.FORK ? table.forks(action) : 1;
+
+        for (int i = 0; i < count; i++) {
+            int taken = count == 1 ? action : table.fork(action, i);
+
+            if (ParseTable.kind(taken) != ParseTable.REDUCE) continue;
+
+            int production = ParseTable.target(taken);
+
+            if (edge == null || table.length(production) > 0)
+                pending.add(new Reduction(node, production, edge));
+        }
+    }
+
+    /**
+     * Walks every way down the stack as deep as a body is long, then reduces.
+     *
+     * @param node The node reached so far.
+     * @param edge The only node to go down to from the head, or null for any.
+     * @param left How many more symbols of the body to walk down.
+     * @param body The nodes of the body, filled in from its end.
+     * @param production The production being reduced by.
+     * @param terminal The ordinal of the terminal of the token being parsed.
+     * @param position The index of the token being parsed.
+     */
+    private void walk(Node node, Node edge, int left, ForestNode[] body,
+                      int production, int terminal, int position) {
+        if (left == 0) {
+            reduce(node, body.clone(), production, terminal, position);
+            return;
+        }
+
+        for (int i = 0; i < node.edges; i++) {
+            if (edge != null && node.to[i] != edge) continue;
+
+            body[left - 1] = node.labels[i];
+            walk(node.to[i], null, left - 1, body, production, terminal, position);
+        }
+    }
+
+    /**
+     * Reduces by a production down to a node of the stack, adding the way it
+     * was parsed to the shared node of the forest, and linking the head it goes
+     * to back to the node.
+     *
+     * @param below The node of the stack the body begins above.
+     * @param body The nodes of the body.
+     * @param production The production being reduced by.
+     * @param terminal The ordinal of the terminal of the token being parsed.
+     * @param position The index of the token being parsed.
+     */
+    private void reduce(Node below, ForestNode[] body, int production, int terminal, int position) {
+        int rule = table.head(production);
+
+        if (rule < 0) {
+            accepted = body[0];
+            return;
+        }
+
+        int start = body.length == 0 ? position : body[0].start;
+        long key = (long)(TERMINALS + rule) << 32 | start;
+        ForestNode node = shared.get(key);
+
+        if (node == null) {
+            node = new ForestNode(rule, start, position);
+            shared.put(key, node);
+        }
+
+        node.pack(production, body);
+
+        int state = table.goTo(below.state, rule);
+        Node head = heads[state];
+
+        if (head == null) {
+            head = heads[state] = new Node(state, position);
+            head.add(below, node);
+            frontier.add(head);
+            empties |= below.position == position;
+            queue(head, terminal, null);
+            return;
+        }
+
+        // Already linked, the node of the forest was shared and has the new way.
+        if (head.has(below)) return;
+
+        head.add(below, node);
+        empties |= below.position == position;
+        queue(head, terminal, below);
+
+        // Other heads may reach down through this one, having been made by an
+        // empty body on top of it, so they take their reductions again.
+        if (empties)
+            for (Node other : frontier)
+                if (other != head) queue(other, terminal, null);
+    }
+
+    /**
+     * Reports a token none of the stacks could take.
+     *
+     * @param token The token.
+     * @return Nothing, as the parse ends.
+     * @throws Exception if the error could not be reported.
+     */
+    private ForestNode error(Token token) throws Exception {
+        frontier = null;
+        CompilerExceptionHandler.addException("Syntax error, unexpected \"" + token.value() + "\"",
+                token, CompilerExceptionHandler.ExceptionLevel.WARN);
+        return null;
+    }
+
+    /** A node of the graph structured stack. */
+    private static final class Node {
+        /** The state of the node. */
+        final int state;
+        /** The index of the token the node was made on. */
+        final int position;
+        /** The index of the node in the plain LR stack it came from, or -1. */
+        int depth = -1;
+        /** The nodes below this one. */
+        Node[] to = new Node[1];
+        /** The node of the forest between this node and each below it. */
+        ForestNode[] labels = new ForestNode[1];
+        /** The number of nodes below this one. */
+        int edges;
+
+        /***/
+        Node(int state, int position) {
+            this.state = state;
+            this.position = position;
+        }
+
+        /***/
+        boolean has(Node below) {
+            for (int i = 0; i < edges; i++)
+                if (to[i] == below) return true;
+
+            return false;
+        }
+
+        /***/
+        void add(Node below, ForestNode label) {
+            if (edges == to.length) {
+                to = Arrays.copyOf(to, edges * 2);
+                labels = Arrays.copyOf(labels, edges * 2);
+            }
+
+            to[edges] = below;
+            labels[edges++] = label;
+        }
+    }
+
+    /** A reduction waiting to be done. */
+    private static final class Reduction {
+        /** The head to reduce from. */
+        final Node node;
+        /** The production to reduce by. */
+        final int production;
+        /** The only node to go down to first, or null for any. */
+        final Node edge;
+
+        /***/
+        Reduction(Node node, int production, Node edge) {
+            this.node = node;
+            this.production = production;
+            this.edge = edge;
+        }
+    }
+}
@@ -23,9 +23,14 @@
  */
 package cherry.frontend.parser;
 
-import cherry.frontend.grammar.Grammar;
+import cherry.frontend.grammar.ParseTable;
 import cherry.frontend.grammar.Token;
 import cherry.frontend.lexer.Lexer;
+import cherry.frontend.lexer.LexicalError;
+import cherry.frontend.lexer.TokenBuffer;
+import cherry.frontend.lexer.TokenCache;
+import cherry.frontend.lexer.TokenStream;
+import cherry.util.exception.CompilerExceptionHandler;
 import cherry.util.handler.diagnostic.DiagnosticHandler;
 import cherry.util.handler.flag.FlagHandler;
 import cherry.util.object.ParseTree;
@@ -40,10 +45,13 @@ import java.util.concurrent.Callable;
  * @version 0.0.0.2
  */
 public final class Parser implements Callable<ParseTree> {
+    /** The parse tables of the grammar, shared by every parser. */
+    private static final ParseTable TABLE = ParseTable.get();
+    
     /** The file this parser will be parsing. */
     private final File file;
-    /** The list of tokens found by the lexer. */
-    private List<Token> tokens;
+    /** The tokens of the file, pulled from the lexer as they are needed. */
+    private TokenStream tokens;
     /** The current token being parsed. */
     private Token token;
     
@@ -65,17 +73,45 @@ public final class Parser implements Callable<ParseTree> {
      */
     @Override
     public ParseTree call() throws Exception {
-        // Lex the file for tokens and start the actual parsing process.
-        tokens = new Lexer(file).lex();
+        // The diagnostic needs every token at once, so it gets its own lexer.
+        if (FlagHandler.raisedFlags.contains(FlagHandler.RuntimeFlag.TOKENS)) {
+            try (Lexer lexer = Lexer.open(file); TokenBuffer buffer = lexer.tokenize()) {
+                DiagnosticHandler.print(buffer);
+            }
+        }
         
-        if (FlagHandler.raisedFlags.contains(FlagHandler.RuntimeFlag.TOKENS))
-            DiagnosticHandler.print(tokens, file.getName());
+        // A file that has not changed since it was cached is not lexed again.
+        if (FlagHandler.raisedFlags.contains(FlagHandler.RuntimeFlag.CACHE)) {
+            try (TokenBuffer buffer = TokenCache.shared().tokenize(file)) {
+                tokens = buffer.stream();
+                return parse(buffer.errors());
+            }
+        }
         
-        Grammar.fillFirsts();
+        // Stream the tokens of the file and start the actual parsing process.
+        try (Lexer lexer = Lexer.open(file)) {
+            tokens = lexer;
+            return parse(lexer.errors());
+        }
+    }
+    
+    /**
+     * Parses the tokens of the file.
+     * 
+     * @param errors The mistakes found while lexing the tokens.
+     * @return The resulting {@code ParseTree} of the tokens, or null if they
+     *      could not be parsed.
+     * @throws Exception if unable to parse.
+     */
+    private ParseTree parse(List<LexicalError> errors) throws Exception {
+        ForestNode root = new GlrEngine(TABLE).parse(tokens);
         
-        if (FlagHandler.raisedFlags.contains(FlagHandler.RuntimeFlag.FIRST))
-            DiagnosticHandler.print(Grammar.firsts, true);
+        // Lexical mistakes never stop the lexer, they are all reported here,
+        // once the tokens they were found in have been pulled.
+        for (LexicalError error : errors)
+            CompilerExceptionHandler.addException(error.code.id + " " + error.code.description + " in " + error.filename,
+                    error.line, error.column, CompilerExceptionHandler.ExceptionLevel.WARN);
         
-        return null; // only temporary
+        return root == null ? null : new ParseTree(root);
     }
 }
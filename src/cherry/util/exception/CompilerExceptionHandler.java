@@ -24,6 +24,7 @@
 package cherry.util.exception;
 
 import cherry.frontend.grammar.Token;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import javafx.util.Pair;
@@ -36,7 +37,7 @@ import javafx.util.Pair;
  * @version 0.0.0.2
  */
 public class CompilerExceptionHandler {
-    private static final List<Pair<Throwable, ExceptionLevel>> exceptions = new LinkedList<>();
+    private static final List<Pair<Throwable, ExceptionLevel>> exceptions = Collections.synchronizedList(new LinkedList<>());
     
     public static enum ExceptionLevel {
         LOW,
@@ -69,7 +70,7 @@ public class CompilerExceptionHandler {
     }
     
     public static void addException(String message, Token token, ExceptionLevel severity) throws Exception {
-        addException(message + "\n\tat " + token.value + "(" + token.filename + ":" + token.line + ")", severity);
+        addException(message + "\n\tat " + token.value() + "(" + token.filename + ":" + token.line() + ")", severity);
     }
     
     /**
@@ -24,13 +24,16 @@
 package cherry.util.handler.diagnostic;
 
 import cherry.frontend.grammar.NonTerminal;
+import cherry.frontend.grammar.ParseTable;
 import cherry.frontend.grammar.Symbol;
-import cherry.frontend.grammar.Token;
+import cherry.frontend.grammar.Terminal;
+import cherry.frontend.lexer.IdentifierPool;
+import cherry.frontend.lexer.TokenBuffer;
+import cherry.frontend.lexer.TokenCache;
 import cherry.util.handler.flag.FlagHandler.RuntimeFlag;
 import java.io.File;
 import java.io.IOException;
 import java.util.EnumSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
@@ -63,12 +66,12 @@ public final class DiagnosticHandler {
     
     /**
      * Prints to a file (filename) all the given tokens of a file scanned by the
-     * {@code Lexer}.
+     * {@code Lexer}, along with the mistake each undefined token stands for.
      * 
-     * @param tokens The tokens found during lexing of a file.
-     * @param filename The name of the file to put the results of this method in.
+     * @param tokens The tokens found during lexing of a file, the file is named
+     *      after the file they were found in.
      */
-    public static void print(List<Token> tokens, String filename) {
+    public static void print(TokenBuffer tokens) {
         File subroot = new File(ROOT,"lexer");
 
         // check if the root folder "/diagnostics" exists.
@@ -85,34 +88,166 @@ public final class DiagnosticHandler {
             Element rootElement = doc.createElement("tokens");
             doc.appendChild(rootElement);
             
-            tokens.forEach((token) ->{
+            TokenBuffer.Cursor token = tokens.cursor();
+            
+            while (token.next()) {
                 Element tokenElement = doc.createElement("token");
                 rootElement.appendChild(tokenElement);
                 
                 Element typeElement = doc.createElement("type");
                 Attr value = doc.createAttribute("value");
-                value.setValue(token.type.toString());
+                value.setValue(token.type().toString());
                 typeElement.setAttributeNode(value);
                 tokenElement.appendChild(typeElement);
                 
                 Element nameElement = doc.createElement("name");
                 Attr value1 = doc.createAttribute("value");
-                value1.setValue(token.value);
+                value1.setValue(token.text());
                 nameElement.setAttributeNode(value1);
                 tokenElement.appendChild(nameElement);
                 
                 Element lineElement = doc.createElement("line");
                 Attr value2 = doc.createAttribute("value");
-                value2.setValue(Integer.toString(token.line));
+                value2.setValue(Integer.toString(token.line()));
                 lineElement.setAttributeNode(value2);
                 tokenElement.appendChild(lineElement);
                 
                 Element columnElement = doc.createElement("column");
                 Attr value3 = doc.createAttribute("value");
-                value3.setValue(Integer.toString(token.column));
+                value3.setValue(Integer.toString(token.column()));
                 columnElement.setAttributeNode(value3);
                 tokenElement.appendChild(columnElement);
-            });
+                
+                // Numbers show the value the lexer worked out for them.
+                String number = null;
+                
+                switch (token.type()) {
+                    case DEC:
+                        number = Double.toString(token.doubleValue());
+                        break;
+                    case REAL:
+                    case HEX:
+                    case OCT:
+                    case BIN:
+                    case WIDE:
+                    case SKINNY:
+                        number = Long.toString(token.longValue());
+                        break;
+                }
+                
+                if (number != null) {
+                    Element numberElement = doc.createElement("number");
+                    Attr value4 = doc.createAttribute("value");
+                    value4.setValue(number);
+                    numberElement.setAttributeNode(value4);
+                    tokenElement.appendChild(numberElement);
+                }
+                
+                // Undefined tokens say what was wrong with them.
+                if (token.error() != null) {
+                    Element errorElement = doc.createElement("error");
+                    Attr code = doc.createAttribute("code");
+                    code.setValue(token.error().id);
+                    errorElement.setAttributeNode(code);
+                    Attr message = doc.createAttribute("message");
+                    message.setValue(token.error().description);
+                    errorElement.setAttributeNode(message);
+                    tokenElement.appendChild(errorElement);
+                }
+            }
+            
+            TransformerFactory transformerFactory = TransformerFactory.newInstance();
+            Transformer transformer = transformerFactory.newTransformer();
+            
+            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+            
+            DOMSource source = new DOMSource(doc);
+            StreamResult result = new StreamResult(new File(subroot, tokens.filename + ".xml"));
+            transformer.transform(source, result);
+        } catch (ParserConfigurationException | TransformerException | DOMException ex) {
+            Logger.getLogger(DiagnosticHandler.class.getName())
+                  .log(Level.SEVERE, ex.getMessage(), ex);
+        }
+    }
+    
+    /**
+     * Creates a diagnostic file {@code identifiers.xml} with how many identifiers
+     * the {@code IdentifierPool} holds and how often one was found already
+     * pooled, which is how many strings pooling saved.
+     */
+    public static void printIdentifierPool() {
+        File subroot = new File(ROOT,"lexer");
+
+        // check if the root folder "/diagnostics" exists.
+        if (!ROOT.exists()) ROOT.mkdir();
+
+        // check if the subroot "lexer" exists.
+        if (!subroot.exists()) subroot.mkdir();
+        
+        try {
+            DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
+            DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
+            Document doc = docBuilder.newDocument();
+            
+            long lookups = IdentifierPool.lookups();
+            long hits = IdentifierPool.hits();
+            
+            Element rootElement = doc.createElement("identifiers");
+            rootElement.setAttribute("size", Integer.toString(IdentifierPool.size()));
+            rootElement.setAttribute("characters", Long.toString(IdentifierPool.characters()));
+            rootElement.setAttribute("lookups", Long.toString(lookups));
+            rootElement.setAttribute("hits", Long.toString(hits));
+            rootElement.setAttribute("hit-rate", String.format("%.4f", lookups == 0 ? 0.0 : (double)hits / lookups));
+            doc.appendChild(rootElement);
+            
+            TransformerFactory transformerFactory = TransformerFactory.newInstance();
+            Transformer transformer = transformerFactory.newTransformer();
+            
+            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+            
+            DOMSource source = new DOMSource(doc);
+            StreamResult result = new StreamResult(new File(subroot, "identifiers.xml"));
+            transformer.transform(source, result);
+        } catch (ParserConfigurationException | TransformerException | DOMException ex) {
+            Logger.getLogger(DiagnosticHandler.class.getName())
+                  .log(Level.SEVERE, ex.getMessage(), ex);
+        }
+    }
+    
+    /**
+     * Creates a diagnostic file {@code cache.xml} with how many files had their
+     * tokens found in the {@code TokenCache} and how many had to be lexed.
+     * 
+     * @param cache The cache the tokens were looked for in.
+     */
+    public static void print(TokenCache cache) {
+        File subroot = new File(ROOT,"lexer");
+
+        // check if the root folder "/diagnostics" exists.
+        if (!ROOT.exists()) ROOT.mkdir();
+
+        // check if the subroot "lexer" exists.
+        if (!subroot.exists()) subroot.mkdir();
+        
+        try {
+            DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
+            DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
+            Document doc = docBuilder.newDocument();
+            
+            long hits = cache.hits();
+            long lookups = hits + cache.misses();
+            
+            Element rootElement = doc.createElement("cache");
+            rootElement.setAttribute("directory", cache.directory().toString());
+            rootElement.setAttribute("hits", Long.toString(hits));
+            rootElement.setAttribute("misses", Long.toString(cache.misses()));
+            rootElement.setAttribute("hit-rate", String.format("%.4f", lookups == 0 ? 0.0 : (double)hits / lookups));
+            rootElement.setAttribute("evictions", Long.toString(cache.evictions()));
+            rootElement.setAttribute("bytes", Long.toString(cache.bytes()));
+            rootElement.setAttribute("limit", Long.toString(cache.limit()));
+            doc.appendChild(rootElement);
             
             TransformerFactory transformerFactory = TransformerFactory.newInstance();
             Transformer transformer = transformerFactory.newTransformer();
@@ -121,7 +256,7 @@ public final class DiagnosticHandler {
             transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
             
             DOMSource source = new DOMSource(doc);
-            StreamResult result = new StreamResult(new File(subroot, filename + ".xml"));
+            StreamResult result = new StreamResult(new File(subroot, "cache.xml"));
             transformer.transform(source, result);
         } catch (ParserConfigurationException | TransformerException | DOMException ex) {
             Logger.getLogger(DiagnosticHandler.class.getName())
@@ -204,7 +339,7 @@ public final class DiagnosticHandler {
             Document doc = docBuilder.newDocument();
             
             // Root of this file.
-            Element rootElement = doc.createElement("firsts");
+            Element rootElement = doc.createElement(firsts ? "firsts" : "follows");
             doc.appendChild(rootElement);
             
             Attr type = doc.createAttribute("type");
@@ -218,13 +353,11 @@ public final class DiagnosticHandler {
                 Set<Symbol> set = gramAttr.get(nt);
                 
                 set.forEach((sym) -> {
-                    String name = sym.symbolName();
-                    
-                    if (".".equals(name))
-                        name = "dot";
-                    
-                    if ("\u03B5".equals(name))
-                        name = "epsilon";
+                    // Most terminals are not spelled as names XML allows, such
+                    // as "." or "$", so they go by the names of their constants.
+                    String name = sym instanceof Terminal
+                            ? ((Terminal)sym).name().toLowerCase()
+                            : sym.symbolName();
                     
                     Element symbol = doc.createElement(name);
                     node.appendChild(symbol);
@@ -244,4 +377,63 @@ public final class DiagnosticHandler {
             Logger.getLogger(DiagnosticHandler.class.getName()).log(Level.WARNING, ex.getMessage(), ex);
         }
     }
+    
+    /**
+     * Creates a diagnostic file {@code TABLE.xml} with the size of the parse
+     * tables, packed and unpacked, whether they were read in from the build or
+     * made at startup, how long that took, and every conflict in them.
+     * 
+     * @param table The parse tables of the grammar.
+     */
+    public static void print(ParseTable table) {
+        File subroot = new File(ROOT, "grammar_attributes");
+        
+        // check if the root folder "/diagnostics" exists.
+        if (!ROOT.exists()) ROOT.mkdir();
+        
+        // check if the subroot "/grammar_attributes" exists.
+        if (!subroot.exists()) subroot.mkdir();
+        
+        try {
+            DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
+            DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
+            Document doc = docBuilder.newDocument();
+            
+            Element rootElement = doc.createElement("table");
+            rootElement.setAttribute("states", Integer.toString(table.states()));
+            rootElement.setAttribute("productions", Integer.toString(table.productions()));
+            rootElement.setAttribute("ints", Integer.toString(table.size()));
+            rootElement.setAttribute("unpacked-ints", Integer.toString(table.denseSize()));
+            rootElement.setAttribute("source", table.isLoaded() ? "build" : "startup");
+            rootElement.setAttribute("milliseconds", String.format("%.3f", table.nanos() / 1e6));
+            rootElement.setAttribute("conflicts", Integer.toString(table.conflicts().size()));
+            doc.appendChild(rootElement);
+            
+            for (ParseTable.Conflict conflict : table.conflicts()) {
+                Element node = doc.createElement("conflict");
+                node.setAttribute("kind", conflict.kind());
+                node.setAttribute("state", Integer.toString(conflict.state));
+                node.setAttribute("on", conflict.terminal.name().toLowerCase());
+                rootElement.appendChild(node);
+                
+                for (int production : conflict.productions) {
+                    Element reduce = doc.createElement("reduce");
+                    reduce.setTextContent(table.production(production));
+                    node.appendChild(reduce);
+                }
+            }
+            
+            TransformerFactory transformerFactory = TransformerFactory.newInstance();
+            Transformer transformer = transformerFactory.newTransformer();
+            
+            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+            
+            DOMSource source = new DOMSource(doc);
+            StreamResult result = new StreamResult(new File(subroot, "TABLE.xml"));
+            transformer.transform(source, result);
+        } catch (ParserConfigurationException | TransformerException | DOMException ex) {
+            Logger.getLogger(DiagnosticHandler.class.getName()).log(Level.WARNING, ex.getMessage(), ex);
+        }
+    }
 }
@@ -47,7 +47,8 @@ public final class FlagHandler {
          * The {@code --diagnose(subflags)} allows the compiler to set various
          * diagnostic flags. These are very handy for debugging issues with the
          * compiler during development times. The current sub-flags for
-         * {@code --diagnose} are: {@code FIRST, FOLLOW}.
+         * {@code --diagnose} are: {@code FLAGS, FILES, TOKENS, IDENTIFIERS,
+         * HITS, FIRST, FOLLOW, TABLE}.
          */
         DIAGNOSE(true, false),
         /**
@@ -55,6 +56,12 @@ public final class FlagHandler {
          * in the compiler itself and to open a debugging program that 
          */
         DEBUG(false, false),
+        /**
+         * The {@code --cache} allows the compiler to keep the tokens of every
+         * file it lexes in the {@code TokenCache}, and to read them back from
+         * there instead of lexing a file that has not changed.
+         */
+        CACHE(false, false),
         /**
          * A sub flag that tells the compiler that it should output data about
          * the flags on the command line.
@@ -70,6 +77,17 @@ public final class FlagHandler {
          * the tokens found by the files that it takes in.
          */
         TOKENS(false, true),
+        /**
+         * A sub flag that tells the compiler that it should output data about
+         * the identifiers pooled while lexing, such as how many there are and
+         * how often a pooled one was reused.
+         */
+        IDENTIFIERS(false, true),
+        /**
+         * A sub flag that tells the compiler that it should output data about
+         * the token cache, such as how many files were found in it.
+         */
+        HITS(false, true),
         /**
          * A sub flag that tells the compiler that it should output data about
          * the FIRST sets built by the grammar.
@@ -79,7 +97,13 @@ public final class FlagHandler {
          * A sub flag that tells the compiler that it should output data about
          * the FOLLOW sets built by the grammar.
          */
-        FOLLOW(false, true);
+        FOLLOW(false, true),
+        /**
+         * A sub flag that tells the compiler that it should output data about
+         * the parse tables built from the grammar, such as their size, how
+         * long they took to build, and every conflict in them.
+         */
+        TABLE(false, true);
         
         /** A place for all our flags to reside for the exists method. */
         private static final Map<String, RuntimeFlag> flags = new HashMap<>();
@@ -60,8 +60,11 @@ public final class FlagParser {
             result.add(RuntimeFlag.FILES);
             result.add(RuntimeFlag.FLAGS);
             result.add(RuntimeFlag.TOKENS);
+            result.add(RuntimeFlag.IDENTIFIERS);
+            result.add(RuntimeFlag.HITS);
             result.add(RuntimeFlag.FIRST);
             result.add(RuntimeFlag.FOLLOW);
+            result.add(RuntimeFlag.TABLE);
             return result;
         }
         
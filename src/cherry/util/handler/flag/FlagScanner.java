@@ -48,6 +48,7 @@ public final class FlagScanner {
     static List<String> scan(String flagDetails) {
         List<String> result = new ArrayList<>();
         flag = flagDetails.toCharArray();
+        index = 0;
         
         for ( ; index != flag.length; ) {
             BUILDER.delete(0, BUILDER.length());
@@ -23,11 +23,25 @@
  */
 package cherry.util.object;
 
+import cherry.frontend.parser.ForestNode;
+
 /**
+ * The result of parsing a file: the shared packed parse forest of every way the
+ * file could be parsed, which is a single tree unless the file is ambiguous.
  *
  * @author SoraKatadzuma
  * @version 0.0.0.2
  */
 public final class ParseTree {
+    /** The node of the start rule. */
+    public final ForestNode root;
     
+    /**
+     * Constructs a new {@code ParseTree} from its root.
+     * 
+     * @param root The node of the start rule.
+     */
+    public ParseTree(ForestNode root) {
+        this.root = root;
+    }
 }
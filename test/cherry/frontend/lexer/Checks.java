@@ -0,0 +1,63 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.lexer;
+
+/**
+ * What the checks of the lexers share: a way to write down every token of a
+ * buffer, so two buffers can be compared as text, and a way to fail.
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+final class Checks {
+    /***/
+    private Checks() {}
+
+    /**
+     * Writes down everything a buffer knows about each of its tokens.
+     *
+     * @param tokens The tokens to write down.
+     * @return One line for each token.
+     */
+    static String describe(TokenBuffer tokens) {
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < tokens.size(); i++) {
+            text.append(tokens.type(i)).append(' ').append(tokens.start(i)).append('+').append(tokens.length(i))
+                .append(' ').append(tokens.line(i)).append(':').append(tokens.column(i))
+                .append(' ').append(tokens.symbolId(i)).append(' ').append(tokens.longValue(i))
+                .append(' ').append(tokens.error(i)).append(' ').append(tokens.text(i)).append('\n');
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * @param condition What must hold.
+     * @param message What went wrong if it does not.
+     */
+    static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
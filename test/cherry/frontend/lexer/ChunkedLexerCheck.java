@@ -0,0 +1,81 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.lexer;
+
+import static cherry.frontend.lexer.Checks.check;
+import static cherry.frontend.lexer.Checks.describe;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Checks that lexing a source in chunks finds the same tokens as lexing it
+ * from start to end. The sources are made of pieces that a chunk is likely to
+ * start inside of, such as strings and comments that span lines, so the runs
+ * that guessed wrong have to be thrown away.
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+public final class ChunkedLexerCheck {
+    /** The pieces the sources are made of. */
+    private static final String[] PIECES = {
+        "use a;\n", "\"str ing\" ", "\"multi\nline\nstring\" ", "'c' ", "'x\n", "# comment \"q\n", "12 0x1F ",
+        "\"", "b.c(d);\n", "\n\n", "3.25 ", "'\\u0041' ", "\"\\\"#\" "
+    };
+    /** The numbers of chunks each source is lexed in. */
+    private static final int[] CHUNKS = { 2, 3, 7, 12 };
+
+    /***/
+    private ChunkedLexerCheck() {}
+
+    /**
+     * Lexes random sources both ways and compares the tokens.
+     *
+     * @param args Not used.
+     * @throws Exception if a source could not be lexed or a check fails.
+     */
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(7);
+
+        for (int i = 0; i < 300; i++) {
+            StringBuilder text = new StringBuilder();
+            int pieces = 50 + random.nextInt(400);
+
+            for (int j = 0; j < pieces; j++) text.append(PIECES[random.nextInt(PIECES.length)]);
+
+            Source source = Source.of("check", text.toString().getBytes(StandardCharsets.UTF_8));
+            String expected = describe(new Lexer(source).tokenize());
+
+            for (int chunks : CHUNKS) {
+                String actual = describe(ChunkedLexer.tokenize(source, false, chunks));
+
+                check(expected.equals(actual), "source " + i + " in " + chunks + " chunks lexed differently:\n"
+                        + text);
+            }
+        }
+
+        System.out.println("ChunkedLexerCheck passed");
+    }
+}
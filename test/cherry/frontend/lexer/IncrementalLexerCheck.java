@@ -0,0 +1,108 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.lexer;
+
+import static cherry.frontend.lexer.Checks.check;
+import static cherry.frontend.lexer.Checks.describe;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Checks that relexing a source after an edit finds the same tokens as
+ * lexing the edited source from scratch. The edits are made one after the
+ * other on the same buffer, so each builds on what the last one relexed.
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+public final class IncrementalLexerCheck {
+    /** The characters the edits insert, enough to open and close any token. */
+    private static final String ALPHABET = "0123456789.xLs \n;ab\"'#\\u";
+
+    /***/
+    private IncrementalLexerCheck() {}
+
+    /**
+     * Makes a few chosen edits and many random ones, and compares the tokens
+     * after each.
+     *
+     * @param args Not used.
+     * @throws Exception if a source could not be lexed or a check fails.
+     */
+    public static void main(String[] args) throws Exception {
+        String text = "use 12 0x1f 3.5 'a' \"s\";\n# note\nb.c(d);\n";
+        TokenBuffer tokens = new Lexer(Source.of("check", bytes(text))).tokenize();
+
+        // Splitting a token, joining two, and opening a string, then emptying the source.
+        String[][] edits = { { "5", "0", " " }, { "5", "1", "" }, { "0", "0", "\"" } };
+
+        for (String[] edit : edits) {
+            int offset = Integer.parseInt(edit[0]), removed = Integer.parseInt(edit[1]);
+
+            text = text.substring(0, offset) + edit[2] + text.substring(offset + removed);
+            tokens = relex(tokens, offset, removed, edit[2], text);
+        }
+
+        tokens = relex(tokens, 0, text.length(), "", "");
+        text = "";
+
+        Random random = new Random(7);
+
+        for (int i = 0; i < 20000; i++) {
+            int offset = random.nextInt(text.length() + 1);
+            int removed = Math.min(random.nextInt(3), text.length() - offset);
+            StringBuilder inserted = new StringBuilder();
+
+            for (int j = random.nextInt(4); j > 0; j--)
+                inserted.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+
+            text = text.substring(0, offset) + inserted + text.substring(offset + removed);
+            tokens = relex(tokens, offset, removed, inserted.toString(), text);
+        }
+
+        System.out.println("IncrementalLexerCheck passed");
+    }
+
+    /**
+     * Relexes an edit and checks the tokens against those of the edited text.
+     *
+     * @return The relexed tokens.
+     */
+    private static TokenBuffer relex(TokenBuffer tokens, int offset, int removed, String inserted, String edited)
+            throws Exception {
+        TokenBuffer relexed = IncrementalLexer.relex(tokens, offset, removed, inserted);
+        String expected = describe(new Lexer(Source.of("check", bytes(edited))).tokenize());
+
+        check(expected.equals(describe(relexed)), "replacing " + removed + " at " + offset + " with \""
+                + inserted + "\" relexed differently:\n" + edited);
+
+        return relexed;
+    }
+
+    /***/
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
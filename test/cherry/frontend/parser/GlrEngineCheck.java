@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.parser;
+
+import cherry.frontend.grammar.NonTerminal;
+import cherry.frontend.grammar.ParseTable;
+import cherry.frontend.lexer.Lexer;
+import cherry.frontend.lexer.Source;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Checks the paths of the {@code GlrEngine} through its single conflict: at
+ * the semicolon of {@code use a b;} the type name is either a single name or
+ * a name with an empty extension, so the stack forks. Both ways reduce to the
+ * same type name, which is packed with them, and the stack is joined back so
+ * the rest of the input is parsed on the plain stack again.
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+public final class GlrEngineCheck {
+    /** The terminals of the random inputs. */
+    private static final String[] WORDS = { "use", "namespace", "a", ".", ";" };
+    /** The inputs the grammar accepts, written with the words above. */
+    private static final Pattern ACCEPTED = Pattern.compile("((use|namespace) a a( \\. a)* ;)?");
+    /** The engine being checked. */
+    private static final GlrEngine ENGINE = new GlrEngine(ParseTable.get());
+
+    /***/
+    private GlrEngineCheck() {}
+
+    /**
+     * Parses chosen inputs down each path and then random ones, checking what
+     * is accepted and the shape of the forest.
+     *
+     * @param args Not used.
+     * @throws Exception if an input could not be lexed or a check fails.
+     */
+    public static void main(String[] args) throws Exception {
+        // Forks and merges into one type name with both ways.
+        for (String input : new String[] { "use a b;", "namespace a b;" }) {
+            ForestNode merged = find(parse(input), NonTerminal.TYPE_NAME);
+
+            check(merged != null && merged.isAmbiguous() && merged.alternatives() == 2,
+                    input + " did not merge into one ambiguous type name");
+            check(merged.size(0) + merged.size(1) == 3,
+                    "the ways of the type name of " + input + " are not a name and a name with an extension");
+        }
+
+        // Forks, merges, and then fails on the joined stack.
+        check(parse("use a b;;") == null, "use a b;; was accepted");
+
+        // Never forks.
+        check(!ambiguous(parse("use a b.c.d;")), "use a b.c.d; is not a single tree");
+        check(parse("use a;") == null, "use a; was accepted");
+        check(parse("use a b.;") == null, "use a b.; was accepted");
+
+        Random random = new Random(3);
+
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder input = new StringBuilder();
+
+            if (random.nextInt(3) == 0) {
+                input.append(random.nextBoolean() ? "use a a" : "namespace a a");
+
+                for (int j = random.nextInt(4); j > 0; j--) input.append(random.nextInt(5) == 0 ? " ." : " . a");
+
+                if (random.nextInt(4) > 0) input.append(" ;");
+            } else {
+                for (int j = random.nextInt(9); j > 0; j--)
+                    input.append(input.length() == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+            }
+
+            ForestNode root = parse(input.toString());
+
+            check(ACCEPTED.matcher(input).matches() == (root != null), "\"" + input + "\" was "
+                    + (root == null ? "rejected" : "accepted"));
+            check(root == null || spans(root), "\"" + input + "\" has a node outside of its parent");
+        }
+
+        System.out.println("GlrEngineCheck passed");
+    }
+
+    /***/
+    private static ForestNode parse(String text) throws Exception {
+        try (Lexer lexer = new Lexer(Source.of("check", text.getBytes(StandardCharsets.UTF_8)))) {
+            return ENGINE.parse(lexer);
+        }
+    }
+
+    /** Finds the first node of a rule, along the first way of each node. */
+    private static ForestNode find(ForestNode node, NonTerminal rule) {
+        if (node == null || node.isTerminal()) return null;
+
+        if (node.rule() == rule) return node;
+
+        for (int i = 0; i < node.size(0); i++) {
+            ForestNode found = find(node.child(0, i), rule);
+
+            if (found != null) return found;
+        }
+
+        return null;
+    }
+
+    /** Tells whether any node under the given one was parsed more than one way. */
+    private static boolean ambiguous(ForestNode node) {
+        if (node.isAmbiguous()) return true;
+
+        for (int alternative = 0; alternative < node.alternatives(); alternative++)
+            for (int i = 0; i < node.size(alternative); i++)
+                if (ambiguous(node.child(alternative, i))) return true;
+
+        return false;
+    }
+
+    /** Tells whether the children of every way of every node lie one after another inside it. */
+    private static boolean spans(ForestNode node) {
+        for (int alternative = 0; alternative < node.alternatives(); alternative++) {
+            int at = node.start;
+
+            for (int i = 0; i < node.size(alternative); i++) {
+                ForestNode child = node.child(alternative, i);
+
+                if (child.start != at || !spans(child)) return false;
+
+                at = child.end;
+            }
+
+            if (at != node.end) return false;
+        }
+
+        return true;
+    }
+
+    /***/
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
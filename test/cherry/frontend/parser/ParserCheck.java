@@ -0,0 +1,131 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 SoraKatadzuma.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package cherry.frontend.parser;
+
+import cherry.frontend.grammar.Token;
+import cherry.frontend.grammar.Type;
+import cherry.frontend.lexer.Lexer;
+import cherry.util.object.ParseTree;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that the tree of a file keeps the text and positions of its tokens
+ * after another file is parsed on the same thread, which reads into the
+ * buffer the first file was read into unless its tokens kept it.
+ *
+ * @author SoraKatadzuma
+ * @version 0.0.0.2
+ */
+public final class ParserCheck {
+    /** A file that parses, with its tokens on several lines and columns. */
+    private static final String FIRST =
+            "# The first file.\n"
+          + "use System\n"
+          + "    Console.Out\n"
+          + "        .Error;\n";
+    /** A file of about the same size with everything somewhere else. */
+    private static final String SECOND =
+            "\n\n\n\n\n\n"
+          + "namespace Second Place;\n"
+          + "# The second file, which is no longer.\n";
+
+    /***/
+    private ParserCheck() {}
+
+    /**
+     * Parses two files in a row and compares the leaves of the first tree with
+     * the tokens the file was lexed into beforehand.
+     *
+     * @param args Not used.
+     * @throws Exception if a file cannot be written or a check fails.
+     */
+    public static void main(String[] args) throws Exception {
+        File first = write("first", FIRST);
+        File second = write("second", SECOND);
+
+        try {
+            List<String> expected = new ArrayList<>();
+
+            for (Token token : Lexer.open(first).lex())
+                if (token.type != Type.EOTS) expected.add(describe(token));
+
+            ParseTree tree = new Parser(first).call();
+
+            check(tree != null, "the first file did not parse");
+            check(new Parser(second).call() != null, "the second file did not parse");
+
+            List<String> actual = new ArrayList<>();
+            leaves(tree.root, actual);
+
+            check(expected.equals(actual), "the first tree changed: expected " + expected + " but was " + actual);
+        } finally {
+            Files.deleteIfExists(first.toPath());
+            Files.deleteIfExists(second.toPath());
+        }
+
+        System.out.println("ParserCheck passed");
+    }
+
+    /**
+     * Collects the leaves under a node in order, along the first way each
+     * node was parsed.
+     *
+     * @param node The node to start at.
+     * @param leaves The list to add the leaves to.
+     */
+    private static void leaves(ForestNode node, List<String> leaves) {
+        if (node.isTerminal()) {
+            if (node.token.type != Type.EOTS) leaves.add(describe(node.token));
+            return;
+        }
+
+        if (node.alternatives() == 0) return;
+
+        for (int i = 0; i < node.size(0); i++)
+            leaves(node.child(0, i), leaves);
+    }
+
+    /***/
+    private static String describe(Token token) {
+        return token.value() + "@" + token.line() + ":" + token.column();
+    }
+
+    /***/
+    private static File write(String name, String text) throws Exception {
+        File file = File.createTempFile(name, ".cherry");
+
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+
+        return file;
+    }
+
+    /***/
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}